@@ -0,0 +1,41 @@
+package plc.project;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalyzerBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private Ast.Source _ast;
+
+    @Setup
+    public void setup() {
+        _ast = new ParserCompiler(new Lexer(SourceGenerator.generate(size)).lex()).parseSource();
+    }
+
+    @Benchmark
+    public Scope analyze() {
+        Analyzer analyzer = new Analyzer(null);
+        analyzer.visit(_ast);
+        return analyzer.scope;
+    }
+
+}
@@ -0,0 +1,52 @@
+package plc.project;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int size;
+
+    private String _source;
+
+    @Setup
+    public void setup() {
+        _source = SourceGenerator.generate(size);
+    }
+
+    @Benchmark
+    public List<Token> lex() {
+        return new Lexer(_source).lex();
+    }
+
+    @Benchmark
+    public List<Token> lexDfa() {
+        return new DfaLexer(_source).lex();
+    }
+
+    @Benchmark
+    public List<Token> lexReader() {
+        return new DfaLexer(new StringReader(_source)).lex();
+    }
+
+}
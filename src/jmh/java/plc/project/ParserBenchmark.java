@@ -0,0 +1,55 @@
+package plc.project;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int size;
+
+    private List<Token> _tokens;
+    private List<Token> _expressions;
+
+    @Setup
+    public void setup() {
+        _tokens = new Lexer(SourceGenerator.generate(size)).lex();
+
+        // a method made of nothing but short expression statements, which
+        // isolates the cost of the binary expression rules
+        StringBuilder source = new StringBuilder("DEF main() DO\n");
+        for (int i = 0; i < size; i++) {
+            source.append("    x = a * 2 + f(b) < c AND d\n    y\n    z.w(1) == NIL\n");
+        }
+        _expressions = new Lexer(source.append("END\n").toString()).lex();
+    }
+
+    @Benchmark
+    public Ast.Source parseSource() {
+        return new ParserCompiler(_tokens).parseSource();
+    }
+
+    @Benchmark
+    public Ast.Source parseExpressions() {
+        return new ParserCompiler(_expressions).parseSource();
+    }
+
+}
@@ -0,0 +1,70 @@
+package plc.project;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures call-heavy recursive programs, where most statements executed
+ * are returns.
+ */
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecursionBenchmark {
+
+    private static final Map<String, String> PROGRAMS = Map.of(
+            "fib", String.join("\n",
+                    "DEF fib(n: Integer): Integer DO",
+                    "    IF n < 2 DO",
+                    "        RETURN n",
+                    "    END",
+                    "    RETURN fib(n - 1) + fib(n - 2)",
+                    "END",
+                    "DEF main(): Integer DO",
+                    "    RETURN fib(15)",
+                    "END"),
+            "ackermann", String.join("\n",
+                    "DEF ack(m: Integer, n: Integer): Integer DO",
+                    "    IF m == 0 DO",
+                    "        RETURN n + 1",
+                    "    END",
+                    "    IF n == 0 DO",
+                    "        RETURN ack(m - 1, 1)",
+                    "    END",
+                    "    RETURN ack(m - 1, ack(m, n - 1))",
+                    "END",
+                    "DEF main(): Integer DO",
+                    "    RETURN ack(2, 10)",
+                    "END")
+    );
+
+    @Param({"fib", "ackermann"})
+    public String program;
+
+    private Ast.Source _ast;
+
+    @Setup
+    public void setup() {
+        _ast = new ParserCompiler(new Lexer(PROGRAMS.get(program)).lex()).parseSource();
+    }
+
+    @Benchmark
+    public Environment.PlcObject execute() {
+        return new Interpreter(new Scope(null)).visit(_ast);
+    }
+
+}
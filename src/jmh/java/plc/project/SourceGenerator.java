@@ -0,0 +1,91 @@
+package plc.project;
+
+import java.util.Random;
+
+/**
+ * Generates synthetic, well-typed sources for the benchmarks. A program of
+ * a given size has {@code size} methods on top of a fixed set of fields and a
+ * {@code main} calling every method once, so it passes the lexer, both
+ * parsers' shared grammar, the analyzer, the generator and the interpreter.
+ * <p>
+ * The output only depends on the size and the seed, so results are
+ * reproducible across runs and machines.
+ */
+public final class SourceGenerator {
+
+    public static final long SEED = 0x5EEDL;
+
+    private static final String[] ARITHMETIC = {"+", "-", "*"};
+    private static final String[] COMPARISON = {"<", "<=", ">", ">=", "==", "!="};
+
+    private final Random _random;
+    private final StringBuilder _builder = new StringBuilder();
+
+    private SourceGenerator(long seed) {
+        _random = new Random(seed);
+    }
+
+    public static String generate(int size) {
+        return generate(size, SEED);
+    }
+
+    public static String generate(int size, long seed) {
+        return new SourceGenerator(seed).source(size);
+    }
+
+    private String source(int size) {
+        _builder.append("!!! generated source, ").append(size).append(" methods\n");
+        _builder.append("LET counter: Integer = 0\n");
+        _builder.append("LET ratio: Decimal = 1.5\n");
+        _builder.append("LET label: String = \"label\\t").append(size).append("\"\n");
+        _builder.append("LET initial: Character = 'c'\n");
+
+        for (int i = 0; i < size; i++) {
+            method(i);
+        }
+
+        _builder.append("DEF main(): Integer DO\n");
+        _builder.append("    LET total: Integer = 0\n");
+        for (int i = 0; i < size; i++) {
+            _builder.append("    total = total + f").append(i).append("(")
+                    .append(number()).append(", ").append(number()).append(")\n");
+        }
+        _builder.append("    counter = total\n");
+        _builder.append("    RETURN 0\n");
+        _builder.append("END\n");
+        return _builder.toString();
+    }
+
+    private void method(int i) {
+        _builder.append("DEF f").append(i).append("(a: Integer, b: Integer): Integer DO\n");
+        _builder.append("    LET x: Integer = ").append(arithmetic("a", "b")).append("\n");
+        _builder.append("    LET y: Decimal = ratio * ").append(number()).append(".25\n");
+        _builder.append("    LET s: String = \"f").append(i).append("\"\n");
+        _builder.append("    IF ").append(comparison()).append(" DO\n");
+        _builder.append("        x = x - ").append(number()).append("\n");
+        _builder.append("    ELSE\n");
+        _builder.append("        x = x + ").append(number()).append("\n");
+        _builder.append("    END\n");
+        _builder.append("    WHILE x < ").append(number() + 10).append(" AND b >= 0 DO\n");
+        _builder.append("        x = x + 1\n");
+        _builder.append("    END\n");
+        if (i % 8 != 0) { // bounded call chains keep the interpreter's stack shallow
+            _builder.append("    x = x + f").append(i - 1).append("(b, a)\n");
+        }
+        _builder.append("    RETURN x\n");
+        _builder.append("END\n");
+    }
+
+    private String arithmetic(String left, String right) {
+        return left + " " + ARITHMETIC[_random.nextInt(ARITHMETIC.length)] + " (" + right + " + " + number() + ")";
+    }
+
+    private String comparison() {
+        return "x " + COMPARISON[_random.nextInt(COMPARISON.length)] + " " + number();
+    }
+
+    private int number() {
+        return _random.nextInt(10);
+    }
+
+}
@@ -0,0 +1,183 @@
+package plc.project;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of visitor dispatch alone, by counting the nodes of a
+ * large AST with a visitor which does nothing else. {@code accept} goes
+ * through {@link Ast#accept(Ast.Visitor)}, while {@code instanceofChain}
+ * dispatches with the sequence of {@code instanceof} tests it replaced.
+ */
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VisitorBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    private Ast.Source _ast;
+
+    @Setup
+    public void setup() {
+        _ast = new ParserCompiler(new Lexer(SourceGenerator.generate(size)).lex()).parseSource();
+    }
+
+    @Benchmark
+    public int accept() {
+        return new Counter().visit((Ast) _ast);
+    }
+
+    @Benchmark
+    public int instanceofChain() {
+        return new ChainCounter().visit((Ast) _ast);
+    }
+
+    private static class Counter implements Ast.Visitor<Integer> {
+
+        private int sum(Iterable<? extends Ast> asts) {
+            int count = 0;
+            for (Ast ast : asts) {
+                count += visit(ast);
+            }
+            return count;
+        }
+
+        @Override
+        public Integer visit(Ast.Source ast) {
+            return 1 + sum(ast.getStructs()) + sum(ast.getFields()) + sum(ast.getMethods());
+        }
+
+        @Override
+        public Integer visit(Ast.Struct ast) {
+            return 1 + sum(ast.getFields()) + sum(ast.getMethods());
+        }
+
+        @Override
+        public Integer visit(Ast.Field ast) {
+            return 1 + (ast.getValue().isPresent() ? visit(ast.getValue().get()) : 0);
+        }
+
+        @Override
+        public Integer visit(Ast.Method ast) {
+            return 1 + sum(ast.getStatements());
+        }
+
+        @Override
+        public Integer visit(Ast.Stmt.Expression ast) {
+            return 1 + visit(ast.getExpression());
+        }
+
+        @Override
+        public Integer visit(Ast.Stmt.Declaration ast) {
+            return 1 + (ast.getValue().isPresent() ? visit(ast.getValue().get()) : 0);
+        }
+
+        @Override
+        public Integer visit(Ast.Stmt.Assignment ast) {
+            return 1 + visit(ast.getReceiver()) + visit(ast.getValue());
+        }
+
+        @Override
+        public Integer visit(Ast.Stmt.If ast) {
+            return 1 + visit(ast.getCondition()) + sum(ast.getThenStatements()) + sum(ast.getElseStatements());
+        }
+
+        @Override
+        public Integer visit(Ast.Stmt.For ast) {
+            return 1 + visit(ast.getValue()) + sum(ast.getStatements());
+        }
+
+        @Override
+        public Integer visit(Ast.Stmt.While ast) {
+            return 1 + visit(ast.getCondition()) + sum(ast.getStatements());
+        }
+
+        @Override
+        public Integer visit(Ast.Stmt.Return ast) {
+            return 1 + visit(ast.getValue());
+        }
+
+        @Override
+        public Integer visit(Ast.Expr.Literal ast) {
+            return 1;
+        }
+
+        @Override
+        public Integer visit(Ast.Expr.Group ast) {
+            return 1 + visit(ast.getExpression());
+        }
+
+        @Override
+        public Integer visit(Ast.Expr.Binary ast) {
+            return 1 + visit(ast.getLeft()) + visit(ast.getRight());
+        }
+
+        @Override
+        public Integer visit(Ast.Expr.Access ast) {
+            return 1 + (ast.getReceiver().isPresent() ? visit(ast.getReceiver().get()) : 0);
+        }
+
+        @Override
+        public Integer visit(Ast.Expr.Function ast) {
+            return 1 + (ast.getReceiver().isPresent() ? visit(ast.getReceiver().get()) : 0) + sum(ast.getArguments());
+        }
+
+    }
+
+    private static final class ChainCounter extends Counter {
+
+        @Override
+        public Integer visit(Ast ast) {
+            if (ast instanceof Ast.Struct) {
+                return visit((Ast.Struct) ast);
+            } else if (ast instanceof Ast.Source) {
+                return visit((Ast.Source) ast);
+            } else if (ast instanceof Ast.Field) {
+                return visit((Ast.Field) ast);
+            } else if (ast instanceof Ast.Method) {
+                return visit((Ast.Method) ast);
+            } else if (ast instanceof Ast.Stmt.Expression) {
+                return visit((Ast.Stmt.Expression) ast);
+            } else if (ast instanceof Ast.Stmt.Declaration) {
+                return visit((Ast.Stmt.Declaration) ast);
+            } else if (ast instanceof Ast.Stmt.Assignment) {
+                return visit((Ast.Stmt.Assignment) ast);
+            } else if (ast instanceof Ast.Stmt.If) {
+                return visit((Ast.Stmt.If) ast);
+            } else if (ast instanceof Ast.Stmt.For) {
+                return visit((Ast.Stmt.For) ast);
+            } else if (ast instanceof Ast.Stmt.While) {
+                return visit((Ast.Stmt.While) ast);
+            } else if (ast instanceof Ast.Stmt.Return) {
+                return visit((Ast.Stmt.Return) ast);
+            } else if (ast instanceof Ast.Expr.Literal) {
+                return visit((Ast.Expr.Literal) ast);
+            } else if (ast instanceof Ast.Expr.Group) {
+                return visit((Ast.Expr.Group) ast);
+            } else if (ast instanceof Ast.Expr.Binary) {
+                return visit((Ast.Expr.Binary) ast);
+            } else if (ast instanceof Ast.Expr.Access) {
+                return visit((Ast.Expr.Access) ast);
+            } else {
+                return visit((Ast.Expr.Function) ast);
+            }
+        }
+
+    }
+
+}
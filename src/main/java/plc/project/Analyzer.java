@@ -3,17 +3,47 @@ package plc.project;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public final class Analyzer implements Ast.Visitor<Void> {
 
     public Scope scope;
+    private final TypeRegistry _types;
+    private ScopeStack _symbols;
+    private final Map<Environment.Function, Integer> _order;
+    private final int _index;
 
     public Analyzer(Scope parent) {
+        this(parent, new TypeRegistry());
+    }
+
+    public Analyzer(Scope parent, TypeRegistry types) {
         scope = new Scope(parent);
+        _types = types;
+        _symbols = new ScopeStack(scope);
+        _order = Map.of();
+        _index = 0;
         scope.defineFunction("print", "System.out.println", List.of(Environment.Type.ANY), Environment.Type.NIL, args -> Environment.NIL);
     }
 
+    /**
+     * Creates an analyzer for the body of the method at {@code index} in its
+     * source, over the scope of all method signatures. The {@code order} of
+     * the functions of those methods is used to reject calls to later ones.
+     */
+    private Analyzer(Scope signatures, TypeRegistry types, Map<Environment.Function, Integer> order, int index) {
+        scope = signatures;
+        _types = types;
+        _symbols = new ScopeStack(signatures);
+        _order = order;
+        _index = index;
+    }
+
     @Override
     public Void visit(Ast.Source ast) {
         for (Ast.Struct struct : ast.getStructs()) {
@@ -24,6 +54,91 @@ public final class Analyzer implements Ast.Visitor<Void> {
             visit(field);
         }
 
+        return visitMethods(ast);
+    }
+
+    /**
+     * Analyzes the source in two phases, checking method bodies concurrently
+     * on {@code pool}. Structs and fields are analyzed as usual, after which
+     * the functions of all methods are defined in one scope over the global
+     * one. That scope is no longer modified, so the bodies are then checked
+     * in parallel, each with a symbol table of its own, and it becomes the
+     * scope of this analyzer.
+     * <p>
+     * Sequential analysis only defines a method once the previous ones have
+     * been analyzed, so a body calling a later method fails, as do bodies
+     * with errors and methods which would clash with a global function. The
+     * methods are then analyzed sequentially instead, from the untouched
+     * global scope, so the annotations, or the error, are always the ones of
+     * {@link #visit(Ast.Source)}.
+     */
+    public Void visit(Ast.Source ast, ForkJoinPool pool) {
+        if (pool.getParallelism() < 2 || ast.getMethods().size() < 2
+                || ast.getMethods().stream().anyMatch(method -> !method.getStructs().isEmpty())) {
+            return visit(ast);
+        }
+
+        for (Ast.Struct struct : ast.getStructs()) {
+            visit(struct);
+        }
+
+        for (Ast.Field field : ast.getFields()) {
+            visit(field);
+        }
+
+        Scope signatures = new Scope(scope);
+        Map<Environment.Function, Integer> order = new IdentityHashMap<>();
+        List<Environment.Type> retTypes = new ArrayList<>();
+        boolean sequential = false; // decided outside the try, so errors of the fallback are not caught
+        try {
+            for (Ast.Method method : ast.getMethods()) {
+                if (scope.definesFunction(method.getName(), method.getParameters().size())) {
+                    sequential = true;
+                    break;
+                }
+                Environment.Function function = defineFunction(method, signatures);
+                order.put(function, order.size());
+                retTypes.add(function.getReturnType());
+            }
+        } catch (RuntimeException e) {
+            sequential = true;
+        }
+        if (sequential) {
+            return visitMethods(ast);
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < ast.getMethods().size(); i++) {
+            Ast.Method method = ast.getMethods().get(i);
+            Analyzer analyzer = new Analyzer(signatures, _types, order, i);
+            Environment.Type retType = retTypes.get(i);
+            tasks.add(pool.submit(() -> analyzer.visitMethod(method, retType)));
+        }
+
+        for (ForkJoinTask<?> task : tasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                return visitMethods(ast);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+
+        scope = signatures;
+        _symbols = new ScopeStack(signatures);
+        if (ast.getMethods().stream().noneMatch(method -> method.getName().equals("main") && method.getParameters().isEmpty())) {
+            throw new RuntimeException("main() is not defined.");
+        }
+        return null;
+    }
+
+    /**
+     * Analyzes the methods of the source in order, once its structs and
+     * fields have been.
+     */
+    private Void visitMethods(Ast.Source ast) {
         Ast.Method main = null;
         for (Ast.Method method : ast.getMethods()) {
             visit(method);
@@ -39,6 +154,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Struct ast) {
+        _types.getStructType(ast.getShape(), scope);
         for (Ast.Field field : ast.getFields())
             visit(field);
         for (Ast.Method method : ast.getMethods())
@@ -50,28 +166,17 @@ public final class Analyzer implements Ast.Visitor<Void> {
     public Void visit(Ast.Field ast) {
         if (ast.getValue().isPresent()) {
             visit(ast.getValue().get());
-            requireAssignable(Environment.getType(ast.getTypeName(), scope), ast.getValue().get().getType());
+            requireAssignable(_types.getType(ast.getTypeName(), scope), ast.getValue().get().getType());
         }
 
-        ast.setVariable(scope.defineVariable(ast.getName(), ast.getName(), Environment.getType(ast.getTypeName(), scope), Environment.NIL));
+        ast.setVariable(_symbols.defineVariable(ast.getName(), ast.getName(), _types.getType(ast.getTypeName(), scope), Environment.NIL));
         return null;
     }
 
     public static void requireAssignable(Environment.Type target, Environment.Type source) {
-        String _target = target.getName();
-        String _source = source.getName();
-        if (_target.equals("Any")) {
-            return;
-        }
-        if (_target.equals("Comparable")) {
-            if (_source.equals("Integer") || _source.equals("Decimal") || _source.equals("Character") || _source.equals("String")) {
-                return;
-            }
+        if (!source.isSubtypeOf(target)) {
+            throw new RuntimeException("Specified type does not match the target type.");
         }
-        if (_target.equals(_source)) {
-            return;
-        }
-        throw new RuntimeException("Specified type does not match the target type.");
     }
 
     @Override
@@ -86,50 +191,71 @@ public final class Analyzer implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Method ast) {
-        scope = new Scope(scope);
+        Environment.Function function = defineFunction(ast, null);
+        visitMethod(ast, function.getReturnType());
+        return null;
+    }
+
+    /**
+     * Defines the function of a method, in the given scope or else in the
+     * current level of the symbol table.
+     */
+    private Environment.Function defineFunction(Ast.Method ast, Scope target) {
         List<Environment.Type> paramTypes = new ArrayList<>();
-        for (int i = 0; i < ast.getParameters().size(); ++i) {
-            var param = ast.getParameters().get(i);
-            var type = Environment.getType(ast.getParameterTypeNames().get(i), scope);
-            scope.defineVariable(param, param, type, Environment.NIL);
-            paramTypes.add(type);
+        for (String typeName : ast.getParameterTypeNames()) {
+            paramTypes.add(_types.getType(typeName, scope));
         }
 
         Environment.Type retType;
         if (ast.getReturnTypeName().isEmpty()) {
             retType = Environment.Type.NIL;
         } else {
-            retType = Environment.getType(ast.getReturnTypeName().get(), scope);
+            retType = _types.getType(ast.getReturnTypeName().get(), scope);
         }
-        boolean retVerified = false;
-
-        scope.defineFunction(ast.getName(), ast.getName(), paramTypes, retType, plcObjects -> Environment.NIL);
 
-        for (Ast.Struct struct : ast.getStructs()) {
-            visit(struct);
+        if (target != null) {
+            return target.defineFunction(ast.getName(), ast.getName(), paramTypes, retType, plcObjects -> Environment.NIL);
         }
+        return _symbols.defineFunction(ast.getName(), ast.getName(), paramTypes, retType, plcObjects -> Environment.NIL);
+    }
+
+    /**
+     * Analyzes the parameters, structs and statements of a method in a new
+     * level. Each statement opens a level of its own, so a declaration may
+     * shadow an earlier one of the method, and all are exited at the end.
+     */
+    private void visitMethod(Ast.Method ast, Environment.Type retType) {
+        int level = _symbols.getLevel();
+        boolean retVerified = false;
         try {
+            _symbols.enter();
+            for (int i = 0; i < ast.getParameters().size(); ++i) {
+                var param = ast.getParameters().get(i);
+                var type = _types.getType(ast.getParameterTypeNames().get(i), scope);
+                _symbols.defineVariable(param, param, type, Environment.NIL);
+            }
+
+            for (Ast.Struct struct : ast.getStructs()) {
+                visit(struct);
+            }
             for (Ast.Stmt statement : ast.getStatements()) {
-                scope = new Scope(scope);
+                _symbols.enter();
                 visit(statement);
                 if (statement instanceof Ast.Stmt.Return) {
                     requireType(((Ast.Stmt.Return) statement).getValue().getType(), retType);
                     retVerified = true;
                 }
             }
-        } catch (RuntimeException e) {
-            throw e;
         } finally {
-            if (!ast.getStatements().isEmpty()) {
-                scope = scope.getParent();
+            while (_symbols.getLevel() > level) {
+                _symbols.exit();
             }
         }
 
         if (!retVerified) {
             requireType(retType, Environment.Type.NIL);
         }
-        ast.setFunction(scope.lookupFunction(ast.getName(), ast.getParameters().size()));
-        return null;
+        ast.setFunction(_symbols.lookupFunction(ast.getName(), ast.getParameters().size()));
     }
 
     @Override
@@ -153,22 +279,22 @@ public final class Analyzer implements Ast.Visitor<Void> {
         visit(ast.getCondition());
         requireType(Environment.Type.BOOLEAN, ast.getCondition().getType());
 
+        _symbols.enter();
         try {
-            scope = new Scope(scope);
             for (Ast.Stmt statement : ast.getThenStatements()) {
                 visit(statement);
             }
         } finally {
-            scope = scope.getParent();
+            _symbols.exit();
         }
 
+        _symbols.enter();
         try {
-            scope = new Scope(scope);
             for (Ast.Stmt statement : ast.getElseStatements()) {
                 visit(statement);
             }
         } finally {
-            scope = scope.getParent();
+            _symbols.exit();
         }
 
         return null;
@@ -182,14 +308,14 @@ public final class Analyzer implements Ast.Visitor<Void> {
             throw new RuntimeException("Then statements are empty.");
         }
 
+        _symbols.enter();
         try {
-            scope = new Scope(scope);
-            scope.defineVariable(ast.getName(), ast.getName(), Environment.Type.INTEGER, Environment.NIL);
+            _symbols.defineVariable(ast.getName(), ast.getName(), Environment.Type.INTEGER, Environment.NIL);
             for (Ast.Stmt statement : ast.getStatements()) {
                 visit(statement);
             }
         } finally {
-            scope = scope.getParent();
+            _symbols.exit();
         }
 
         return null;
@@ -200,13 +326,13 @@ public final class Analyzer implements Ast.Visitor<Void> {
         visit(ast.getCondition());
 
         requireAssignable(Environment.Type.BOOLEAN, ast.getCondition().getType());
+        _symbols.enter();
         try {
-            scope = new Scope(scope);
             for (Ast.Stmt statement : ast.getStatements()) {
                 visit(statement);
             }
         } finally {
-            scope = scope.getParent();
+            _symbols.exit();
         }
 
         return null;
@@ -267,7 +393,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
 
         Environment.Type type = null;
         if (ast.getTypeName().isPresent()) {
-            type = Environment.getType(ast.getTypeName().get(), scope);
+            type = _types.getType(ast.getTypeName().get(), scope);
         }
         if (ast.getValue().isPresent()) {
             visit(ast.getValue().get());
@@ -279,7 +405,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
             requireAssignable(type, ast.getValue().get().getType());
         }
 
-        ast.setVariable(scope.defineVariable(ast.getName(), ast.getName(), type, Environment.NIL));
+        ast.setVariable(_symbols.defineVariable(ast.getName(), ast.getName(), type, Environment.NIL));
         return null;
     }
 
@@ -288,9 +414,13 @@ public final class Analyzer implements Ast.Visitor<Void> {
         if (ast.getReceiver().isPresent()) {
             Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver().get();
             visit(receiver);
-            ast.setVariable(receiver.getVariable().getType().getScope().lookupVariable(ast.getName()));
+            Environment.Type type = receiver.getVariable().getType();
+            ast.setVariable(type.getScope().lookupVariable(ast.getName()));
+            if (type.getShape() != null) {
+                ast.setField(type.getShape(), type.getShape().getSlot(ast.getName()));
+            }
         } else {
-            ast.setVariable(scope.lookupVariable(ast.getName()));
+            ast.setVariable(_symbols.lookupVariable(ast.getName()));
         }
         return null;
     }
@@ -301,7 +431,8 @@ public final class Analyzer implements Ast.Visitor<Void> {
             Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver().get();
             visit(receiver);
 
-            Environment.Function func = receiver.getType().getMethod(ast.getName(), ast.getArguments().size());
+            // the scope's functions are still being defined, so no dispatch table is built for them
+            Environment.Function func = receiver.getType().getScope().lookupFunction(ast.getName(), ast.getArguments().size());
 
             for (int i = 1; i < func.getParameterTypes().size(); ++i) {
                 visit(ast.getArguments().get(i));
@@ -310,14 +441,18 @@ public final class Analyzer implements Ast.Visitor<Void> {
 
             ast.setFunction(receiver.getType().getScope().lookupFunction(ast.getName(), ast.getArguments().size()));
         } else {
-            Environment.Function func = scope.lookupFunction(ast.getName(), ast.getArguments().size());
+            Environment.Function func = _symbols.lookupFunction(ast.getName(), ast.getArguments().size());
+            Integer index = _order.get(func);
+            if (index != null && index > _index) {
+                throw new RuntimeException("The function " + func.getName() + "/" + ast.getArguments().size() + " is not defined yet.");
+            }
 
             for (int i = 0; i < func.getParameterTypes().size(); ++i) {
                 visit(ast.getArguments().get(i));
                 requireType(func.getParameterTypes().get(i), ast.getArguments().get(i).getType());
             }
 
-            ast.setFunction(scope.lookupFunction(ast.getName(), ast.getArguments().size()));
+            ast.setFunction(func);
         }
         return null;
     }
@@ -351,9 +486,9 @@ public final class Analyzer implements Ast.Visitor<Void> {
                 break;
 
             case "+":
-                if (lhs.getType().getName().equals("String") || rhs.getType().getName().equals("String")) {
+                if (lhs.getType() == Environment.Type.STRING || rhs.getType() == Environment.Type.STRING) {
                     ast.setType(Environment.Type.STRING);
-                } else if (lhs.getType().getName().equals("Integer") || lhs.getType().getName().equals("Decimal")) {
+                } else if (lhs.getType() == Environment.Type.INTEGER || lhs.getType() == Environment.Type.DECIMAL) {
                     requireType(lhs.getType(), rhs.getType());
                     ast.setType(lhs.getType());
                 } else {
@@ -364,7 +499,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
             case "-":
             case "*":
             case "/":
-                if (lhs.getType().getName().equals("Integer") || lhs.getType().getName().equals("Decimal")) {
+                if (lhs.getType() == Environment.Type.INTEGER || lhs.getType() == Environment.Type.DECIMAL) {
                     requireType(lhs.getType(), rhs.getType());
                     ast.setType(lhs.getType());
                 } else {
@@ -378,19 +513,12 @@ public final class Analyzer implements Ast.Visitor<Void> {
     }
 
     private static void requireType(Environment.Type required, Environment.Type given) {
-        if (required.getName().equals("Any")) {
+        if (given.isSubtypeOf(required)) {
             return;
+        } else if (required == Environment.Type.COMPARABLE) {
+            throw new RuntimeException(given.getName() + " is not Comparable.");
         }
-        if (required.getName().equals("Comparable")) {
-            if (given.getName().equals("Integer") || given.getName().equals("Decimal") || given.getName().equals("Character") || given.getName().equals("String")) {
-                return;
-            } else {
-                throw new RuntimeException(given.getName() + " is not Comparable.");
-            }
-        }
-        if (!required.getName().equals(given.getName())) {
-            throw new RuntimeException("Expected type: " + required.getName() + ", received: " + given.getName() + ".");
-        }
+        throw new RuntimeException("Expected type: " + required.getName() + ", received: " + given.getName() + ".");
     }
 
 }
@@ -5,46 +5,21 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
-public abstract class Ast {
+public abstract sealed class Ast {
+
+    /**
+     * Calls the overload of {@link Visitor#visit} for the class of this node.
+     */
+    public abstract <T> T accept(Visitor<T> visitor);
 
     public interface Visitor<T> {
 
+        /**
+         * Dispatches to the overload for the node's class through
+         * {@link Ast#accept(Visitor)}, in constant time for every node.
+         */
         default T visit(Ast ast) {
-            if (ast instanceof Struct) {
-                return visit((Struct) ast);
-            } else if (ast instanceof Source) {
-                return visit((Source) ast);
-            } else if (ast instanceof Field) {
-                return visit((Field) ast);
-            } else if (ast instanceof Method) {
-                return visit((Method) ast);
-            } else if (ast instanceof Stmt.Expression) {
-                return visit((Stmt.Expression) ast);
-            } else if (ast instanceof Stmt.Declaration) {
-                return visit((Stmt.Declaration) ast);
-            } else if (ast instanceof Stmt.Assignment) {
-                return visit((Stmt.Assignment) ast);
-            } else if (ast instanceof Stmt.If) {
-                return visit((Stmt.If) ast);
-            } else if (ast instanceof Stmt.For) {
-                return visit((Stmt.For) ast);
-            } else if (ast instanceof Stmt.While) {
-                return visit((Stmt.While) ast);
-            } else if (ast instanceof Stmt.Return) {
-                return visit((Stmt.Return) ast);
-            } else if (ast instanceof Expr.Literal) {
-                return visit((Expr.Literal) ast);
-            } else if (ast instanceof Expr.Group) {
-                return visit((Expr.Group) ast);
-            } else if (ast instanceof Expr.Binary) {
-                return visit((Expr.Binary) ast);
-            } else if (ast instanceof Expr.Access) {
-                return visit((Expr.Access) ast);
-            } else if (ast instanceof Expr.Function) {
-                return visit((Expr.Function) ast);
-            } else {
-                throw new AssertionError("Unimplemented AST type: " + ast.getClass().getName() + ".");
-            }
+            return ast.accept(this);
         }
 
         T visit(Source ast);
@@ -81,7 +56,7 @@ public abstract class Ast {
 
     }
 
-    public static class Source extends Ast {
+    public static sealed class Source extends Ast {
 
         private final List<Field> _fields;
         private final List<Method> _methods;
@@ -105,6 +80,11 @@ public abstract class Ast {
             return _structs;
         }
 
+        @Override
+        public <T> T accept(Visitor<T> visitor) {
+            return visitor.visit(this);
+        }
+
         @Override
         public boolean equals(Object obj) {
             return obj instanceof Source &&
@@ -162,6 +142,11 @@ public abstract class Ast {
             this._variable = variable;
         }
 
+        @Override
+        public <T> T accept(Visitor<T> visitor) {
+            return visitor.visit(this);
+        }
+
         @Override
         public boolean equals(Object obj) {
             return obj instanceof Field &&
@@ -183,19 +168,34 @@ public abstract class Ast {
 
     }
 
-    public static class Struct extends Source {
+    public static final class Struct extends Source {
 
         private final String _name;
+        private final Shape _shape;
 
         public Struct(String name, List<Field> fields, List<Method> methods) {
             super(fields, methods, null);
             _name = name;
+            List<String> names = new ArrayList<>();
+            for (Field field : fields) {
+                names.add(field.getName());
+            }
+            _shape = new Shape(name, names);
         }
 
         public String getName() {
             return _name;
         }
 
+        public Shape getShape() {
+            return _shape;
+        }
+
+        @Override
+        public <T> T accept(Visitor<T> visitor) {
+            return visitor.visit(this);
+        }
+
         @Override
         public boolean equals(Object obj) {
             return obj instanceof Struct && equals(obj);
@@ -219,6 +219,7 @@ public abstract class Ast {
         private final List<Stmt> _statements;
         private Environment.Function _function = null;
         private final List<Ast.Struct> _structs;
+        private int _frameSize = -1;
 
         public Method(String name, List<String> parameters, List<Stmt> statements, List<Ast.Struct> structs) {
             this(name, parameters, new ArrayList<>(), Optional.of("Any"), statements, structs);
@@ -271,6 +272,24 @@ public abstract class Ast {
             _function = function;
         }
 
+        /**
+         * Returns the number of slots (parameters and top-level declarations)
+         * in the frame of this method, or {@code -1} if it was not resolved by
+         * the {@link Resolver}.
+         */
+        public int getFrameSize() {
+            return _frameSize;
+        }
+
+        public void setFrameSize(int frameSize) {
+            _frameSize = frameSize;
+        }
+
+        @Override
+        public <T> T accept(Visitor<T> visitor) {
+            return visitor.visit(this);
+        }
+
         @Override
         public boolean equals(Object obj) {
             return obj instanceof Method &&
@@ -297,7 +316,7 @@ public abstract class Ast {
 
     }
 
-    public static abstract class Stmt extends Ast {
+    public static abstract sealed class Stmt extends Ast {
 
         public static final class Expression extends Stmt {
 
@@ -311,6 +330,11 @@ public abstract class Ast {
                 return _expression;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Expression &&
@@ -332,6 +356,7 @@ public abstract class Ast {
             private final Optional<String> _typeName;
             private final Optional<Expr> _value;
             private Environment.Variable _variable;
+            private int _slot = -1;
 
             public Declaration(String name, Optional<Expr> value) {
                 this(name, Optional.empty(), value);
@@ -366,6 +391,23 @@ public abstract class Ast {
                 this._variable = variable;
             }
 
+            /**
+             * Returns the slot of the declared variable in the current frame,
+             * or {@code -1} if unresolved.
+             */
+            public int getSlot() {
+                return _slot;
+            }
+
+            public void setSlot(int slot) {
+                _slot = slot;
+            }
+
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Declaration &&
@@ -405,6 +447,11 @@ public abstract class Ast {
                 return _value;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Assignment &&
@@ -427,7 +474,7 @@ public abstract class Ast {
             private final Expr _condition;
             private final List<Stmt> _thenStatements;
             private final List<Stmt> _elseStatements;
-
+            private int _frameSize = -1;
 
             public If(Expr condition, List<Stmt> thenStatements, List<Stmt> elseStatements) {
                 this._condition = condition;
@@ -447,6 +494,24 @@ public abstract class Ast {
                 return _elseStatements;
             }
 
+            /**
+             * Returns the number of slots in the frame this block executes in,
+             * zero if it declares no variables and runs in the enclosing frame
+             * or scope, or {@code -1} if it was not visited by the {@link Resolver}.
+             */
+            public int getFrameSize() {
+                return _frameSize;
+            }
+
+            public void setFrameSize(int frameSize) {
+                _frameSize = frameSize;
+            }
+
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof If &&
@@ -471,6 +536,7 @@ public abstract class Ast {
             private final String _name;
             private final Expr _value;
             private final List<Stmt> _statements;
+            private int _frameSize = -1;
 
             public For(String name, Expr value, List<Stmt> statements) {
                 _name = name;
@@ -490,6 +556,24 @@ public abstract class Ast {
                 return _statements;
             }
 
+            /**
+             * Returns the number of slots in the frame this block executes in,
+             * or {@code -1} if the enclosing method was not resolved by the
+             * {@link Resolver}.
+             */
+            public int getFrameSize() {
+                return _frameSize;
+            }
+
+            public void setFrameSize(int frameSize) {
+                _frameSize = frameSize;
+            }
+
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof For &&
@@ -513,6 +597,7 @@ public abstract class Ast {
 
             private final Expr _condition;
             private final List<Stmt> _statements;
+            private int _frameSize = -1;
 
             public While(Expr condition, List<Stmt> statements) {
                 _condition = condition;
@@ -527,6 +612,24 @@ public abstract class Ast {
                 return _statements;
             }
 
+            /**
+             * Returns the number of slots in the frame this block executes in,
+             * zero if it declares no variables and runs in the enclosing frame
+             * or scope, or {@code -1} if it was not visited by the {@link Resolver}.
+             */
+            public int getFrameSize() {
+                return _frameSize;
+            }
+
+            public void setFrameSize(int frameSize) {
+                _frameSize = frameSize;
+            }
+
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof While &&
@@ -556,6 +659,11 @@ public abstract class Ast {
                 return _value;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Return &&
@@ -573,7 +681,7 @@ public abstract class Ast {
 
     }
 
-    public static abstract class Expr extends Ast {
+    public static abstract sealed class Expr extends Ast {
 
         public abstract Environment.Type getType();
 
@@ -607,6 +715,11 @@ public abstract class Ast {
                 _type = type;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Literal &&
@@ -649,6 +762,11 @@ public abstract class Ast {
                 _type = type;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Group &&
@@ -703,6 +821,11 @@ public abstract class Ast {
                 _type = type;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Binary &&
@@ -729,6 +852,10 @@ public abstract class Ast {
             private final Optional<Expr> _receiver;
             private final String _name;
             private Environment.Variable _variable = null;
+            private int _depth = -1;
+            private int _slot = -1;
+            private Shape _shape = null;
+            private int _field = -1;
 
             public Access(Optional<Expr> receiver, String name) {
                 _receiver = receiver;
@@ -754,11 +881,57 @@ public abstract class Ast {
                 _variable = variable;
             }
 
+            /**
+             * Returns true if the {@link Resolver} bound this access to a local
+             * variable, in which case it lives {@link #getDepth()} frames up
+             * at {@link #getSlot()}. Unresolved accesses are globals.
+             */
+            public boolean isResolved() {
+                return _slot >= 0;
+            }
+
+            public int getDepth() {
+                return _depth;
+            }
+
+            public int getSlot() {
+                return _slot;
+            }
+
+            public void setSlot(int depth, int slot) {
+                _depth = depth;
+                _slot = slot;
+            }
+
+            /**
+             * Returns the struct layout this access was last resolved against,
+             * by the {@link Analyzer} or by the {@link Interpreter} as it runs,
+             * or null if it was not. Objects of that shape hold the field at
+             * {@link #getField()}, which is -1 if they have no such field.
+             */
+            public Shape getShape() {
+                return _shape;
+            }
+
+            public int getField() {
+                return _field;
+            }
+
+            public void setField(Shape shape, int field) {
+                _shape = shape;
+                _field = field;
+            }
+
             @Override
             public Environment.Type getType() {
                 return getVariable().getType();
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Access &&
@@ -784,6 +957,7 @@ public abstract class Ast {
             private final String _name;
             private final List<Expr> _arguments;
             private Environment.Function _function = null;
+            private Scope.CallSite _callSite = null;
 
             public Function(Optional<Expr> receiver, String name, List<Expr> arguments) {
                 _receiver = receiver;
@@ -814,11 +988,28 @@ public abstract class Ast {
                 _function = function;
             }
 
+            /**
+             * Returns the lookup the {@link Interpreter} last cached for this
+             * call, or null if it has not made one.
+             */
+            public Scope.CallSite getCallSite() {
+                return _callSite;
+            }
+
+            public void setCallSite(Scope.CallSite callSite) {
+                _callSite = callSite;
+            }
+
             @Override
             public Environment.Type getType() {
                 return getFunction().getReturnType();
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Function &&
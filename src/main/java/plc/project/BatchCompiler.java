@@ -0,0 +1,347 @@
+package plc.project;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles many independent sources concurrently, each into its own output
+ * directory, collecting the time spent in each phase and the diagnostics of
+ * every file which failed.
+ * <p>
+ * The source at {@code dir/a/b.plc}, found through the input {@code dir}, is
+ * compiled into {@code output/a/b/Main.java} (or {@code Main.class}), while a
+ * source given as a plain file only keeps its name. A source whose output
+ * directory is already taken by an earlier one is not compiled, and fails
+ * with a diagnostic instead of overwriting that output.
+ */
+public final class BatchCompiler {
+
+    public enum Phase {
+        LEX, PARSE, ANALYZE, GENERATE
+    }
+
+    private final String _lexer;
+    private final String _parser;
+    private final String _analyzer;
+    private final String _backend;
+    private final Path _output;
+    private final LongAdder[] _nanos = new LongAdder[Phase.values().length];
+
+    /**
+     * @param lexer    the lexer, as accepted by {@link Main}: regex, dfa, parallel or stream
+     * @param parser   the parser, as accepted by {@link Main}: sequential or parallel
+     * @param analyzer the analyzer, as accepted by {@link Main}: sequential or parallel
+     * @param backend  the generator, as accepted by {@link Main}: source or bytecode
+     * @param output   the directory the outputs are written under
+     */
+    public BatchCompiler(String lexer, String parser, String analyzer, String backend, Path output) {
+        _lexer = lexer;
+        _parser = parser;
+        _analyzer = analyzer;
+        _backend = backend;
+        _output = output;
+        for (int i = 0; i < _nanos.length; i++) {
+            _nanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Creates an executor of the given kind, platform or virtual. Virtual
+     * threads are looked up reflectively, as they need Java 21.
+     */
+    public static ExecutorService executor(String kind, int threads) {
+        if (kind.equals("platform")) {
+            return Executors.newFixedThreadPool(threads);
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            throw new IllegalArgumentException("Virtual threads are not available on this JVM.");
+        }
+    }
+
+    /**
+     * Expands the inputs into the sources to compile. A directory stands for
+     * every {@code .plc} file below it, and a pattern containing glob
+     * characters for every file below its fixed prefix which it matches.
+     */
+    public static List<Source> expand(List<String> inputs) throws IOException {
+        List<Source> sources = new ArrayList<>();
+        for (String input : inputs) {
+            int glob = indexOfGlob(input);
+            if (glob >= 0) {
+                int separator = input.lastIndexOf('/', glob);
+                Path root = Path.of(separator < 0 ? "." : input.substring(0, separator + 1));
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input.substring(separator + 1));
+                walk(root, path -> matcher.matches(root.relativize(path)), sources);
+            } else if (Files.isDirectory(Path.of(input))) {
+                walk(Path.of(input), path -> path.getFileName().toString().endsWith(".plc"), sources);
+            } else {
+                Path path = Path.of(input);
+                sources.add(new Source(path, path.getFileName()));
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Returns whether an input stands for many sources, being a directory or
+     * a pattern containing glob characters, rather than a single file.
+     */
+    public static boolean isMultiple(String input) {
+        return indexOfGlob(input) >= 0 || Files.isDirectory(Path.of(input));
+    }
+
+    private static int indexOfGlob(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            if ("*?[{".indexOf(input.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void walk(Path root, Predicate<Path> filter, List<Source> sources) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.filter(Files::isRegularFile).filter(filter).sorted().collect(Collectors.toList())) {
+                sources.add(new Source(path, root.relativize(path)));
+            }
+        }
+    }
+
+    /**
+     * Compiles the sources on the executor, returning once all of them have
+     * completed.
+     */
+    public Report compile(List<Source> sources, ExecutorService executor) throws InterruptedException {
+        long start = System.nanoTime();
+        List<Diagnostic> diagnostics = new ArrayList<>();
+        Map<Path, Source> outputs = new HashMap<>();
+        List<Future<Diagnostic>> futures = new ArrayList<>();
+        for (Source source : sources) {
+            Source previous = outputs.putIfAbsent(source.getOutputName().normalize(), source);
+            if (previous != null) {
+                diagnostics.add(new Diagnostic(source._path, "The output " + source.getOutputName()
+                        + " is also the output of " + previous._path + ".", -1));
+            } else {
+                futures.add(executor.submit(() -> compile(source)));
+            }
+        }
+
+        for (Future<Diagnostic> future : futures) {
+            try {
+                Diagnostic diagnostic = future.get();
+                if (diagnostic != null) {
+                    diagnostics.add(diagnostic);
+                }
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        long[] nanos = new long[_nanos.length];
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = _nanos[i].sum();
+        }
+        return new Report(sources.size(), diagnostics, nanos, System.nanoTime() - start);
+    }
+
+    /**
+     * Compiles a single source, returning its diagnostic if it fails.
+     */
+    private Diagnostic compile(Source source) {
+        try {
+            long time = System.nanoTime();
+            ParserCompiler parser;
+            if (_lexer.equals("stream")) {
+                // tokens are lexed as the parser asks for them, so this is timed as parsing
+                DfaLexer lexer = DfaLexer.map(source._path);
+                parser = new ParserCompiler(lexer::lexToken);
+            } else {
+                String input = Files.readString(source._path, StandardCharsets.UTF_8);
+                List<Token> tokens = _lexer.equals("dfa") ? new DfaLexer(input).lex()
+                        : _lexer.equals("parallel") ? new DfaLexer(input).lex(ForkJoinPool.commonPool())
+                        : new Lexer(input).lex();
+                time = record(Phase.LEX, time);
+                parser = new ParserCompiler(tokens);
+            }
+            Ast.Source ast = _parser.equals("parallel") ? parser.parseSource(ForkJoinPool.commonPool()) : parser.parseSource();
+            time = record(Phase.PARSE, time);
+            TypeRegistry types = new TypeRegistry();
+            if (_analyzer.equals("parallel")) {
+                new Analyzer(null, types).visit(ast, ForkJoinPool.commonPool());
+            } else {
+                new Analyzer(null, types).visit(ast);
+            }
+            time = record(Phase.ANALYZE, time);
+
+            Path directory = _output.resolve(source.getOutputName());
+            Files.createDirectories(directory);
+            if (_backend.equals("bytecode")) {
+                try (OutputStream out = Files.newOutputStream(directory.resolve("Main.class"))) {
+                    new BytecodeGenerator(out).visit(ast);
+                }
+            } else {
+                try (Writer out = Files.newBufferedWriter(directory.resolve("Main.java"), StandardCharsets.UTF_8)) {
+                    new Generator(new PrintWriter(out), types).visit(ast);
+                }
+            }
+            record(Phase.GENERATE, time);
+            return null;
+        } catch (ParseException e) {
+            return new Diagnostic(source._path, e.getMessage(), e.getIndex());
+        } catch (IOException | UncheckedIOException e) {
+            return new Diagnostic(source._path, "Failed reading the source file or writing its output.", -1);
+        } catch (RuntimeException e) {
+            return new Diagnostic(source._path, String.valueOf(e.getMessage()), -1);
+        }
+    }
+
+    private long record(Phase phase, long start) {
+        long end = System.nanoTime();
+        _nanos[phase.ordinal()].add(end - start);
+        return end;
+    }
+
+    /**
+     * A source to compile, with its path relative to the input it was found
+     * through.
+     */
+    public static final class Source {
+
+        private final Path _path;
+        private final Path _relative;
+
+        public Source(Path path, Path relative) {
+            _path = path;
+            _relative = relative;
+        }
+
+        public Path getPath() {
+            return _path;
+        }
+
+        /**
+         * Returns the directory of the output, relative to the output root,
+         * which is the relative path without its extension.
+         */
+        public Path getOutputName() {
+            String name = _relative.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            Path parent = _relative.getParent();
+            String stem = dot > 0 ? name.substring(0, dot) : name;
+            return parent == null ? Path.of(stem) : parent.resolve(stem);
+        }
+
+    }
+
+    /**
+     * An error which stopped the compilation of a source, with the index it
+     * occurred at or -1 if unknown.
+     */
+    public static final class Diagnostic {
+
+        private final Path _source;
+        private final String _message;
+        private final int _index;
+
+        public Diagnostic(Path source, String message, int index) {
+            _source = source;
+            _message = message;
+            _index = index;
+        }
+
+        public Path getSource() {
+            return _source;
+        }
+
+        public String getMessage() {
+            return _message;
+        }
+
+        public int getIndex() {
+            return _index;
+        }
+
+        @Override
+        public String toString() {
+            return _source + (_index >= 0 ? ":" + _index : "") + ": error: " + _message;
+        }
+
+    }
+
+    public static final class Report {
+
+        private final int _files;
+        private final List<Diagnostic> _diagnostics;
+        private final long[] _nanos;
+        private final long _wallNanos;
+
+        private Report(int files, List<Diagnostic> diagnostics, long[] nanos, long wallNanos) {
+            _files = files;
+            _diagnostics = diagnostics;
+            _nanos = nanos;
+            _wallNanos = wallNanos;
+        }
+
+        public int getFiles() {
+            return _files;
+        }
+
+        public List<Diagnostic> getDiagnostics() {
+            return _diagnostics;
+        }
+
+        /**
+         * Returns the time spent in a phase, summed over all sources.
+         */
+        public long getNanos(Phase phase) {
+            return _nanos[phase.ordinal()];
+        }
+
+        public long getWallNanos() {
+            return _wallNanos;
+        }
+
+        /**
+         * Prints the diagnostics sorted by source, followed by a summary of
+         * the phase timings. The streaming lexer runs interleaved with the
+         * parser, so with it lexing is included in the parse time and the
+         * lex time is zero.
+         */
+        public void print(PrintStream out) {
+            _diagnostics.stream()
+                    .sorted(Comparator.comparing(diagnostic -> diagnostic.getSource().toString()))
+                    .forEach(out::println);
+            out.printf("%d files, %d failed in %.1f ms%n", _files, _diagnostics.size(), _wallNanos / 1e6);
+            for (Phase phase : Phase.values()) {
+                out.printf("  %-8s %10.1f ms%n", phase.name().toLowerCase(), getNanos(phase) / 1e6);
+            }
+        }
+
+    }
+
+}
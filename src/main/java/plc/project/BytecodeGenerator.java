@@ -0,0 +1,1034 @@
+package plc.project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles an analyzed {@link Ast.Source} straight into the class file of
+ * {@code Main}, the class the {@link Generator} writes as Java source, so a
+ * program can be run without invoking javac. Types, variables and functions
+ * are mapped through their JVM names, as the {@link Generator} does.
+ * <p>
+ * Integer, Decimal, Boolean and Character values are kept unboxed and only
+ * boxed where an Object is expected; {@code ==} and {@code !=} on references
+ * compare with {@link java.util.Objects#equals}. The class file targets
+ * version 49, which is verified by type inference and so needs no stack map
+ * frames. Structs are not supported.
+ */
+public final class BytecodeGenerator implements Ast.Visitor<Void> {
+
+    private static final String CLASS = "Main";
+
+    private final OutputStream _out;
+    private final ConstantPool _pool = new ConstantPool();
+    private final ByteArrayOutputStream _fields = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream _methods = new ByteArrayOutputStream();
+    private int _fieldCount = 0;
+    private int _methodCount = 0;
+
+    private Code _code;
+    private String _returnDescriptor;
+    private final Deque<Map<String, Integer>> _locals = new ArrayDeque<>();
+
+    public BytecodeGenerator(OutputStream out) {
+        _out = out;
+    }
+
+    /**
+     * Compiles the source and defines the resulting {@code Main} class in a
+     * new class loader.
+     */
+    public static Class<?> load(Ast.Source ast) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new BytecodeGenerator(bytes).visit(ast);
+        return new Loader().define(bytes.toByteArray());
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        if (!ast.getStructs().isEmpty()) {
+            throw new RuntimeException("Structs are not supported by the bytecode generator.");
+        }
+
+        // Main() initializes the fields in order
+        begin();
+        _code.op(ALOAD_0, 1);
+        _code.invoke(INVOKESPECIAL, _pool.method("java/lang/Object", "<init>", "()V"), 1, 0);
+        for (Ast.Field field : ast.getFields()) {
+            visit(field);
+        }
+        _code.op(RETURN, 0);
+        end(ACC_PUBLIC, "<init>", "()V");
+
+        // main(String[]) runs new Main().main(), exiting with its result
+        Ast.Method main = ast.getMethods().stream()
+                .filter(method -> method.getName().equals("main") && method.getParameters().isEmpty())
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("main() is not defined."));
+        String mainDescriptor = methodDescriptor(main.getFunction());
+        begin();
+        _code.type(NEW, _pool.type(CLASS), 1);
+        _code.op(DUP, 1);
+        _code.invoke(INVOKESPECIAL, _pool.method(CLASS, "<init>", "()V"), 1, 0);
+        _code.invoke(INVOKEVIRTUAL, _pool.method(CLASS, main.getFunction().getJvmName(), mainDescriptor), 1, size(returnDescriptor(mainDescriptor)));
+        if (returnDescriptor(mainDescriptor).equals("I")) {
+            _code.invoke(INVOKESTATIC, _pool.method("java/lang/System", "exit", "(I)V"), 1, 0);
+        } else {
+            pop(returnDescriptor(mainDescriptor));
+        }
+        _code.op(RETURN, 0);
+        end(ACC_PUBLIC | ACC_STATIC, "main", "([Ljava/lang/String;)V");
+
+        for (Ast.Method method : ast.getMethods()) {
+            visit(method);
+        }
+
+        try {
+            DataOutputStream out = new DataOutputStream(_out);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            int thisClass = _pool.type(CLASS);
+            int superClass = _pool.type("java/lang/Object");
+            _pool.write(out);
+            out.writeShort(ACC_PUBLIC | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(_fieldCount);
+            _fields.writeTo(out);
+            out.writeShort(_methodCount);
+            _methods.writeTo(out);
+            out.writeShort(0);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Struct ast) {
+        throw new RuntimeException("Structs are not supported by the bytecode generator.");
+    }
+
+    @Override
+    public Void visit(Ast.Field ast) {
+        String descriptor = descriptor(ast.getVariable().getType());
+        int name = _pool.utf8(ast.getVariable().getJvmName());
+        int type = _pool.utf8(descriptor);
+        _fields.write(0);
+        _fields.write(0);
+        _fields.write(name >> 8);
+        _fields.write(name);
+        _fields.write(type >> 8);
+        _fields.write(type);
+        _fields.write(0);
+        _fields.write(0);
+        _fieldCount++;
+
+        if (ast.getValue().isPresent()) {
+            _code.op(ALOAD_0, 1);
+            value(ast.getValue().get(), descriptor);
+            _code.field(PUTFIELD, _pool.field(CLASS, ast.getVariable().getJvmName(), descriptor), -1 - size(descriptor));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Method ast) {
+        if (!ast.getStructs().isEmpty()) {
+            throw new RuntimeException("Structs are not supported by the bytecode generator.");
+        }
+
+        String descriptor = methodDescriptor(ast.getFunction());
+        begin();
+        _returnDescriptor = returnDescriptor(descriptor);
+        List<Environment.Type> types = ast.getFunction().getParameterTypes();
+        for (int i = 0; i < ast.getParameters().size(); i++) {
+            declare(ast.getParameters().get(i), descriptor(types.get(i)));
+        }
+        statements(ast.getStatements());
+
+        // javac rejects methods which can fall off their end, these only reach
+        // here if the analyzer allowed a path without a RETURN
+        switch (_returnDescriptor) {
+            case "V" -> _code.op(RETURN, 0);
+            case "I", "Z", "C" -> {
+                _code.op(ICONST_0, 1);
+                _code.op(IRETURN, -1);
+            }
+            case "D" -> {
+                _code.op(DCONST_0, 2);
+                _code.op(DRETURN, -2);
+            }
+            default -> {
+                _code.op(ACONST_NULL, 1);
+                _code.op(ARETURN, -1);
+            }
+        }
+        end(0, ast.getFunction().getJvmName(), descriptor);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Expression ast) {
+        String descriptor = expression(ast.getExpression());
+        pop(descriptor);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Declaration ast) {
+        String descriptor = descriptor(ast.getVariable().getType());
+        if (ast.getValue().isPresent()) {
+            value(ast.getValue().get(), descriptor);
+        } else {
+            switch (descriptor) {
+                case "I", "Z", "C" -> _code.op(ICONST_0, 1);
+                case "D" -> _code.op(DCONST_0, 2);
+                case "Ljava/lang/String;" -> _code.constant(LDC, _pool.string(""), 1);
+                default -> _code.op(ACONST_NULL, 1);
+            }
+        }
+        store(declare(ast.getName(), descriptor), descriptor);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Assignment ast) {
+        Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+        if (receiver.getReceiver().isPresent()) {
+            throw new RuntimeException("Field assignment is not supported by the bytecode generator.");
+        }
+
+        String descriptor = descriptor(receiver.getVariable().getType());
+        Integer local = local(receiver.getName());
+        if (local != null) {
+            value(ast.getValue(), descriptor);
+            store(local, descriptor);
+        } else {
+            _code.op(ALOAD_0, 1);
+            value(ast.getValue(), descriptor);
+            _code.field(PUTFIELD, _pool.field(CLASS, receiver.getVariable().getJvmName(), descriptor), -1 - size(descriptor));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.If ast) {
+        Label otherwise = new Label();
+        Label end = new Label();
+        value(ast.getCondition(), "Z");
+        _code.jump(IFEQ, otherwise, -1);
+        block(ast.getThenStatements());
+        if (!ast.getElseStatements().isEmpty()) {
+            _code.jump(GOTO, end, 0);
+        }
+        _code.mark(otherwise);
+        block(ast.getElseStatements());
+        _code.mark(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.For ast) {
+        Label condition = new Label();
+        Label end = new Label();
+        value(ast.getValue(), "Ljava/lang/Iterable;");
+        _code.invoke(INVOKEINTERFACE, _pool.interfaceMethod("java/lang/Iterable", "iterator", "()Ljava/util/Iterator;"), 1, 1);
+        int iterator = _code.allocate(1);
+        store(iterator, "Ljava/util/Iterator;");
+
+        _code.mark(condition);
+        load(iterator, "Ljava/util/Iterator;");
+        _code.invoke(INVOKEINTERFACE, _pool.interfaceMethod("java/util/Iterator", "hasNext", "()Z"), 1, 1);
+        _code.jump(IFEQ, end, -1);
+        _locals.push(new HashMap<>());
+        load(iterator, "Ljava/util/Iterator;");
+        _code.invoke(INVOKEINTERFACE, _pool.interfaceMethod("java/util/Iterator", "next", "()Ljava/lang/Object;"), 1, 1);
+        unbox("I");
+        store(declare(ast.getName(), "I"), "I");
+        statements(ast.getStatements());
+        _locals.pop();
+        _code.jump(GOTO, condition, 0);
+        _code.mark(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.While ast) {
+        Label condition = new Label();
+        Label end = new Label();
+        _code.mark(condition);
+        value(ast.getCondition(), "Z");
+        _code.jump(IFEQ, end, -1);
+        block(ast.getStatements());
+        _code.jump(GOTO, condition, 0);
+        _code.mark(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Return ast) {
+        if (_returnDescriptor.equals("V")) {
+            if (!(ast.getValue() instanceof Ast.Expr.Literal) || ((Ast.Expr.Literal) ast.getValue()).getLiteral() != null) {
+                pop(expression(ast.getValue()));
+            }
+            _code.op(RETURN, 0);
+            return null;
+        }
+
+        value(ast.getValue(), _returnDescriptor);
+        switch (_returnDescriptor) {
+            case "I", "Z", "C" -> _code.op(IRETURN, -1);
+            case "D" -> _code.op(DRETURN, -2);
+            default -> _code.op(ARETURN, -1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Literal ast) {
+        Object literal = ast.getLiteral();
+        if (literal == null) {
+            _code.op(ACONST_NULL, 1);
+        } else if (literal instanceof Boolean) {
+            _code.op((Boolean) literal ? ICONST_1 : ICONST_0, 1);
+        } else if (literal instanceof BigInteger) {
+            integer(((BigInteger) literal).intValue());
+        } else if (literal instanceof Character) {
+            integer((Character) literal);
+        } else if (literal instanceof BigDecimal) {
+            _code.constant(LDC2_W, _pool.decimal(((BigDecimal) literal).doubleValue()), 2);
+        } else {
+            _code.constant(LDC, _pool.string((String) literal), 1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Binary ast) {
+        String operator = ast.getOperator();
+        switch (operator) {
+            case "AND", "OR" -> {
+                Label shortCircuit = new Label();
+                Label end = new Label();
+                int jump = operator.equals("AND") ? IFEQ : IFNE;
+                value(ast.getLeft(), "Z");
+                _code.jump(jump, shortCircuit, -1);
+                value(ast.getRight(), "Z");
+                _code.jump(jump, shortCircuit, -1);
+                _code.op(operator.equals("AND") ? ICONST_1 : ICONST_0, 1);
+                _code.jump(GOTO, end, -1);
+                _code.mark(shortCircuit);
+                _code.op(operator.equals("AND") ? ICONST_0 : ICONST_1, 1);
+                _code.mark(end);
+            }
+            case "<", "<=", ">", ">=", "==", "!=" -> comparison(ast);
+            case "+" -> {
+                if (descriptor(ast.getType()).equals("Ljava/lang/String;")) {
+                    concatenation(ast);
+                } else {
+                    arithmetic(ast, IADD, DADD);
+                }
+            }
+            case "-" -> arithmetic(ast, ISUB, DSUB);
+            case "*" -> arithmetic(ast, IMUL, DMUL);
+            default -> arithmetic(ast, IDIV, DDIV);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Access ast) {
+        String descriptor = descriptor(ast.getVariable().getType());
+        if (ast.getReceiver().isPresent()) {
+            String jvmName = ast.getVariable().getJvmName();
+            if (!jvmName.endsWith("()")) {
+                throw new RuntimeException("Field access is not supported by the bytecode generator.");
+            }
+            String owner = owner(expression(ast.getReceiver().get()));
+            String name = jvmName.substring(0, jvmName.length() - 2);
+            invoke(owner, name, "()" + descriptor, 1, size(descriptor));
+            return null;
+        }
+
+        Integer local = local(ast.getName());
+        if (local != null) {
+            load(local, descriptor);
+        } else {
+            _code.op(ALOAD_0, 1);
+            _code.field(GETFIELD, _pool.field(CLASS, ast.getVariable().getJvmName(), descriptor), size(descriptor) - 1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Function ast) {
+        Environment.Function function = ast.getFunction();
+        List<Ast.Expr> arguments = ast.getArguments();
+        if (ast.getReceiver().isPresent()) {
+            String owner = owner(expression(ast.getReceiver().get()));
+            switch (function.getJvmName()) {
+                case "toString" -> _code.invoke(INVOKEVIRTUAL, _pool.method("java/lang/Object", "toString", "()Ljava/lang/String;"), 1, 1);
+                case "compareTo" -> {
+                    value(arguments.get(0), "Ljava/lang/Object;");
+                    _code.invoke(INVOKEINTERFACE, _pool.interfaceMethod("java/lang/Comparable", "compareTo", "(Ljava/lang/Object;)I"), 2, 1);
+                }
+                case "substring" -> {
+                    value(arguments.get(0), "I");
+                    value(arguments.get(1), "I");
+                    invoke(owner, "substring", "(II)Ljava/lang/String;", 3, 1);
+                }
+                default -> throw new RuntimeException("The method " + function.getJvmName() + " is not supported by the bytecode generator.");
+            }
+        } else if (function.getJvmName().equals("System.out.println")) {
+            _code.field(GETSTATIC, _pool.field("java/lang/System", "out", "Ljava/io/PrintStream;"), 1);
+            value(arguments.get(0), "Ljava/lang/Object;");
+            _code.invoke(INVOKEVIRTUAL, _pool.method("java/io/PrintStream", "println", "(Ljava/lang/Object;)V"), 2, 0);
+        } else {
+            String descriptor = methodDescriptor(function);
+            int slots = 1;
+            _code.op(ALOAD_0, 1);
+            for (int i = 0; i < arguments.size(); i++) {
+                String parameter = descriptor(function.getParameterTypes().get(i));
+                value(arguments.get(i), parameter);
+                slots += size(parameter);
+            }
+            _code.invoke(INVOKEVIRTUAL, _pool.method(CLASS, function.getJvmName(), descriptor), slots, size(returnDescriptor(descriptor)));
+        }
+        return null;
+    }
+
+    private void comparison(Ast.Expr.Binary ast) {
+        String operator = ast.getOperator();
+        String descriptor = descriptor(ast.getLeft().getType());
+        int jump;
+        int operands = 1;
+        switch (descriptor) {
+            case "I", "C", "Z" -> {
+                value(ast.getLeft(), descriptor);
+                value(ast.getRight(), descriptor);
+                jump = IF_ICMPEQ + condition(operator);
+                operands = 2;
+            }
+            case "D" -> {
+                value(ast.getLeft(), "D");
+                value(ast.getRight(), "D");
+                _code.op(operator.equals("<") || operator.equals("<=") ? DCMPG : DCMPL, -3);
+                jump = IFEQ + condition(operator);
+            }
+            default -> {
+                if (operator.equals("==") || operator.equals("!=")) {
+                    value(ast.getLeft(), "Ljava/lang/Object;");
+                    value(ast.getRight(), "Ljava/lang/Object;");
+                    _code.invoke(INVOKESTATIC, _pool.method("java/util/Objects", "equals", "(Ljava/lang/Object;Ljava/lang/Object;)Z"), 2, 1);
+                    jump = operator.equals("==") ? IFNE : IFEQ;
+                } else {
+                    value(ast.getLeft(), "Ljava/lang/Comparable;");
+                    value(ast.getRight(), "Ljava/lang/Object;");
+                    _code.invoke(INVOKEINTERFACE, _pool.interfaceMethod("java/lang/Comparable", "compareTo", "(Ljava/lang/Object;)I"), 2, 1);
+                    jump = IFEQ + condition(operator);
+                }
+            }
+        }
+
+        Label isTrue = new Label();
+        Label end = new Label();
+        _code.jump(jump, isTrue, -operands);
+        _code.op(ICONST_0, 1);
+        _code.jump(GOTO, end, -1);
+        _code.mark(isTrue);
+        _code.op(ICONST_1, 1);
+        _code.mark(end);
+    }
+
+    /**
+     * Returns the offset of the conditional jump taken for the operator,
+     * relative to the {@code ifeq}/{@code if_icmpeq} instructions.
+     */
+    private static int condition(String operator) {
+        return switch (operator) {
+            case "==" -> 0;
+            case "!=" -> 1;
+            case "<" -> 2;
+            case ">=" -> 3;
+            case ">" -> 4;
+            default -> 5; // <=
+        };
+    }
+
+    private void concatenation(Ast.Expr.Binary ast) {
+        String builder = "java/lang/StringBuilder";
+        _code.type(NEW, _pool.type(builder), 1);
+        _code.op(DUP, 1);
+        _code.invoke(INVOKESPECIAL, _pool.method(builder, "<init>", "()V"), 1, 0);
+        for (Ast.Expr operand : List.of(ast.getLeft(), ast.getRight())) {
+            String descriptor = expression(operand);
+            if (descriptor.startsWith("L") && !descriptor.equals("Ljava/lang/String;")) {
+                descriptor = "Ljava/lang/Object;";
+            }
+            _code.invoke(INVOKEVIRTUAL, _pool.method(builder, "append", "(" + descriptor + ")L" + builder + ";"), 1 + size(descriptor), 1);
+        }
+        _code.invoke(INVOKEVIRTUAL, _pool.method(builder, "toString", "()Ljava/lang/String;"), 1, 1);
+    }
+
+    private void arithmetic(Ast.Expr.Binary ast, int integer, int decimal) {
+        String descriptor = descriptor(ast.getType());
+        value(ast.getLeft(), descriptor);
+        value(ast.getRight(), descriptor);
+        if (descriptor.equals("D")) {
+            _code.op(decimal, -2);
+        } else {
+            _code.op(integer, -1);
+        }
+    }
+
+    private void statements(List<Ast.Stmt> statements) {
+        for (Ast.Stmt statement : statements) {
+            visit(statement);
+        }
+    }
+
+    private void block(List<Ast.Stmt> statements) {
+        _locals.push(new HashMap<>());
+        statements(statements);
+        _locals.pop();
+    }
+
+    /**
+     * Evaluates an expression, leaving a value of its own descriptor on the
+     * stack, which is returned.
+     */
+    private String expression(Ast.Expr ast) {
+        visit(ast);
+        if (ast instanceof Ast.Expr.Literal && ((Ast.Expr.Literal) ast).getLiteral() == null) {
+            return "Ljava/lang/Object;";
+        }
+        return descriptor(ast.getType());
+    }
+
+    /**
+     * Evaluates an expression, converting it to the given descriptor.
+     */
+    private void value(Ast.Expr ast, String descriptor) {
+        coerce(expression(ast), descriptor);
+    }
+
+    private void coerce(String from, String to) {
+        if (from.equals(to) || to.equals("V")) {
+            return;
+        }
+        if (isPrimitive(from) && !isPrimitive(to)) {
+            box(from);
+        } else if (!isPrimitive(from) && isPrimitive(to)) {
+            unbox(to);
+        } else if (!isPrimitive(to) && !to.equals("Ljava/lang/Object;")) {
+            _code.type(CHECKCAST, _pool.type(to.substring(1, to.length() - 1)), 0);
+        }
+    }
+
+    private void box(String descriptor) {
+        String wrapper = wrapper(descriptor);
+        _code.invoke(INVOKESTATIC, _pool.method(wrapper, "valueOf", "(" + descriptor + ")L" + wrapper + ";"), size(descriptor), 1);
+    }
+
+    private void unbox(String descriptor) {
+        String wrapper = wrapper(descriptor);
+        String method = switch (descriptor) {
+            case "I" -> "intValue";
+            case "D" -> "doubleValue";
+            case "Z" -> "booleanValue";
+            default -> "charValue";
+        };
+        _code.type(CHECKCAST, _pool.type(wrapper), 0);
+        _code.invoke(INVOKEVIRTUAL, _pool.method(wrapper, method, "()" + descriptor), 1, size(descriptor));
+    }
+
+    /**
+     * Returns the class on which methods of a value on the stack are called,
+     * boxing primitives.
+     */
+    private String owner(String descriptor) {
+        if (isPrimitive(descriptor)) {
+            box(descriptor);
+            return wrapper(descriptor);
+        }
+        return descriptor.substring(1, descriptor.length() - 1);
+    }
+
+    /**
+     * Invokes a method of a receiver's type, through {@code invokeinterface}
+     * if that type is an interface.
+     */
+    private void invoke(String owner, String name, String descriptor, int pop, int push) {
+        if (owner.equals("java/lang/Comparable") || owner.equals("java/lang/Iterable")) {
+            _code.invoke(INVOKEINTERFACE, _pool.interfaceMethod(owner, name, descriptor), pop, push);
+        } else {
+            _code.invoke(INVOKEVIRTUAL, _pool.method(owner, name, descriptor), pop, push);
+        }
+    }
+
+    private void integer(int value) {
+        if (value >= -1 && value <= 5) {
+            _code.op(ICONST_0 + value, 1);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            _code.op(BIPUSH, 1);
+            _code.u1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            _code.op(SIPUSH, 1);
+            _code.u2(value);
+        } else {
+            _code.constant(LDC, _pool.integer(value), 1);
+        }
+    }
+
+    private void pop(String descriptor) {
+        if (size(descriptor) == 2) {
+            _code.op(POP2, -2);
+        } else if (size(descriptor) == 1) {
+            _code.op(POP, -1);
+        }
+    }
+
+    private int declare(String name, String descriptor) {
+        int slot = _code.allocate(size(descriptor));
+        _locals.peek().put(name, slot);
+        return slot;
+    }
+
+    private Integer local(String name) {
+        for (Map<String, Integer> block : _locals) {
+            if (block.containsKey(name)) {
+                return block.get(name);
+            }
+        }
+        return null;
+    }
+
+    private void load(int slot, String descriptor) {
+        _code.local(switch (descriptor) {
+            case "I", "Z", "C" -> ILOAD;
+            case "D" -> DLOAD;
+            default -> ALOAD;
+        }, slot, size(descriptor));
+    }
+
+    private void store(int slot, String descriptor) {
+        _code.local(switch (descriptor) {
+            case "I", "Z", "C" -> ISTORE;
+            case "D" -> DSTORE;
+            default -> ASTORE;
+        }, slot, -size(descriptor));
+    }
+
+    /**
+     * Starts the code of a method, whose first local is {@code this} (or the
+     * arguments of the static main).
+     */
+    private void begin() {
+        _code = new Code();
+        _code.allocate(1);
+        _locals.clear();
+        _locals.push(new HashMap<>());
+    }
+
+    private void end(int access, String name, String descriptor) {
+        byte[] code = _code.bytes();
+        try {
+            DataOutputStream out = new DataOutputStream(_methods);
+            out.writeShort(access);
+            out.writeShort(_pool.utf8(name));
+            out.writeShort(_pool.utf8(descriptor));
+            out.writeShort(1);
+            out.writeShort(_pool.utf8("Code"));
+            out.writeInt(12 + code.length);
+            out.writeShort(_code._maxStack);
+            out.writeShort(_code._maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0);
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        _methodCount++;
+    }
+
+    /**
+     * Maps a type to its field descriptor through its JVM name.
+     */
+    private static String descriptor(Environment.Type type) {
+        String jvmName = type.getJvmName();
+        return switch (jvmName) {
+            case "Integer" -> "I";
+            case "Double" -> "D";
+            case "Boolean" -> "Z";
+            case "Character" -> "C";
+            case "void" -> "V";
+            case "String" -> "Ljava/lang/String;";
+            case "Object" -> "Ljava/lang/Object;";
+            case "Comparable" -> "Ljava/lang/Comparable;";
+            default -> {
+                if (jvmName.startsWith("Iterable<")) {
+                    yield "Ljava/lang/Iterable;";
+                }
+                throw new RuntimeException("The type " + type.getName() + " is not supported by the bytecode generator.");
+            }
+        };
+    }
+
+    private static String methodDescriptor(Environment.Function function) {
+        StringBuilder builder = new StringBuilder("(");
+        for (Environment.Type type : function.getParameterTypes()) {
+            builder.append(descriptor(type));
+        }
+        return builder.append(")").append(descriptor(function.getReturnType())).toString();
+    }
+
+    private static String returnDescriptor(String methodDescriptor) {
+        return methodDescriptor.substring(methodDescriptor.indexOf(')') + 1);
+    }
+
+    private static int size(String descriptor) {
+        return switch (descriptor) {
+            case "V" -> 0;
+            case "D", "J" -> 2;
+            default -> 1;
+        };
+    }
+
+    private static boolean isPrimitive(String descriptor) {
+        return descriptor.length() == 1;
+    }
+
+    private static String wrapper(String descriptor) {
+        return switch (descriptor) {
+            case "I" -> "java/lang/Integer";
+            case "D" -> "java/lang/Double";
+            case "Z" -> "java/lang/Boolean";
+            default -> "java/lang/Character";
+        };
+    }
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ACONST_NULL = 0x01;
+    private static final int ICONST_0 = 0x03;
+    private static final int ICONST_1 = 0x04;
+    private static final int DCONST_0 = 0x0E;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int ILOAD = 0x15;
+    private static final int DLOAD = 0x18;
+    private static final int ALOAD = 0x19;
+    private static final int ALOAD_0 = 0x2A;
+    private static final int ISTORE = 0x36;
+    private static final int DSTORE = 0x39;
+    private static final int ASTORE = 0x3A;
+    private static final int POP = 0x57;
+    private static final int POP2 = 0x58;
+    private static final int DUP = 0x59;
+    private static final int IADD = 0x60;
+    private static final int DADD = 0x63;
+    private static final int ISUB = 0x64;
+    private static final int DSUB = 0x67;
+    private static final int IMUL = 0x68;
+    private static final int DMUL = 0x6B;
+    private static final int IDIV = 0x6C;
+    private static final int DDIV = 0x6F;
+    private static final int DCMPL = 0x97;
+    private static final int DCMPG = 0x98;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9A;
+    private static final int IF_ICMPEQ = 0x9F;
+    private static final int GOTO = 0xA7;
+    private static final int IRETURN = 0xAC;
+    private static final int DRETURN = 0xAF;
+    private static final int ARETURN = 0xB0;
+    private static final int RETURN = 0xB1;
+    private static final int GETSTATIC = 0xB2;
+    private static final int GETFIELD = 0xB4;
+    private static final int PUTFIELD = 0xB5;
+    private static final int INVOKEVIRTUAL = 0xB6;
+    private static final int INVOKESPECIAL = 0xB7;
+    private static final int INVOKESTATIC = 0xB8;
+    private static final int INVOKEINTERFACE = 0xB9;
+    private static final int NEW = 0xBB;
+    private static final int CHECKCAST = 0xC0;
+    private static final int WIDE = 0xC4;
+
+    /**
+     * The constant pool of the class, deduplicating its entries.
+     */
+    private static final class ConstantPool {
+
+        private final ByteArrayOutputStream _bytes = new ByteArrayOutputStream();
+        private final DataOutputStream _out = new DataOutputStream(_bytes);
+        private final Map<String, Integer> _entries = new HashMap<>();
+        private int _count = 1;
+
+        private int utf8(String value) {
+            return entry("Utf8 " + value, 1, out -> {
+                out.writeByte(1);
+                out.writeUTF(value);
+            });
+        }
+
+        private int integer(int value) {
+            return entry("Integer " + value, 1, out -> {
+                out.writeByte(3);
+                out.writeInt(value);
+            });
+        }
+
+        private int decimal(double value) {
+            return entry("Double " + Double.doubleToRawLongBits(value), 2, out -> {
+                out.writeByte(6);
+                out.writeDouble(value);
+            });
+        }
+
+        private int string(String value) {
+            int utf8 = utf8(value);
+            return entry("String " + value, 1, out -> {
+                out.writeByte(8);
+                out.writeShort(utf8);
+            });
+        }
+
+        private int type(String name) {
+            int utf8 = utf8(name);
+            return entry("Class " + name, 1, out -> {
+                out.writeByte(7);
+                out.writeShort(utf8);
+            });
+        }
+
+        private int field(String owner, String name, String descriptor) {
+            return member(9, owner, name, descriptor);
+        }
+
+        private int method(String owner, String name, String descriptor) {
+            return member(10, owner, name, descriptor);
+        }
+
+        private int interfaceMethod(String owner, String name, String descriptor) {
+            return member(11, owner, name, descriptor);
+        }
+
+        private int member(int tag, String owner, String name, String descriptor) {
+            int type = type(owner);
+            int nameUtf8 = utf8(name);
+            int descriptorUtf8 = utf8(descriptor);
+            int nameAndType = entry("NameAndType " + name + " " + descriptor, 1, out -> {
+                out.writeByte(12);
+                out.writeShort(nameUtf8);
+                out.writeShort(descriptorUtf8);
+            });
+            return entry(tag + " " + owner + "." + name + descriptor, 1, out -> {
+                out.writeByte(tag);
+                out.writeShort(type);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        private int entry(String key, int slots, Entry entry) {
+            Integer index = _entries.get(key);
+            if (index != null) {
+                return index;
+            }
+            try {
+                entry.write(_out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            index = _count;
+            _count += slots;
+            if (_count > 0xFFFF) {
+                throw new RuntimeException("The constant pool of the class is too large.");
+            }
+            _entries.put(key, index);
+            return index;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeShort(_count);
+            _bytes.writeTo(out);
+        }
+
+        @FunctionalInterface
+        private interface Entry {
+
+            void write(DataOutputStream out) throws IOException;
+
+        }
+
+    }
+
+    /**
+     * The code of a method being emitted, tracking the operand stack depth
+     * and local variables it needs.
+     */
+    private static final class Code {
+
+        private byte[] _bytes = new byte[64];
+        private int _length = 0;
+        private int _stack = 0;
+        private int _maxStack = 0;
+        private int _maxLocals = 0;
+
+        private void op(int opcode, int delta) {
+            u1(opcode);
+            _stack += delta;
+            _maxStack = Math.max(_maxStack, _stack);
+        }
+
+        private void constant(int opcode, int index, int delta) {
+            if (opcode == LDC && index > 0xFF) {
+                op(LDC_W, delta);
+                u2(index);
+            } else if (opcode == LDC) {
+                op(LDC, delta);
+                u1(index);
+            } else {
+                op(opcode, delta);
+                u2(index);
+            }
+        }
+
+        private void type(int opcode, int index, int delta) {
+            op(opcode, delta);
+            u2(index);
+        }
+
+        private void field(int opcode, int index, int delta) {
+            op(opcode, delta);
+            u2(index);
+        }
+
+        /**
+         * Emits an invocation popping {@code arguments} stack slots (including
+         * the receiver) and pushing {@code result} slots.
+         */
+        private void invoke(int opcode, int index, int arguments, int result) {
+            op(opcode, result - arguments);
+            u2(index);
+            if (opcode == INVOKEINTERFACE) {
+                u1(arguments);
+                u1(0);
+            }
+        }
+
+        private void local(int opcode, int slot, int delta) {
+            if (slot > 0xFF) {
+                op(WIDE, 0);
+                op(opcode, delta);
+                u2(slot);
+            } else {
+                op(opcode, delta);
+                u1(slot);
+            }
+        }
+
+        private void jump(int opcode, Label target, int delta) {
+            int at = _length;
+            op(opcode, delta);
+            if (target._position >= 0) {
+                u2(offset(at, target._position));
+            } else {
+                target._branches.add(at);
+                u2(0);
+            }
+        }
+
+        private void mark(Label label) {
+            label._position = _length;
+            for (int branch : label._branches) {
+                int offset = offset(branch, _length);
+                _bytes[branch + 1] = (byte) (offset >> 8);
+                _bytes[branch + 2] = (byte) offset;
+            }
+        }
+
+        private int allocate(int slots) {
+            int slot = _maxLocals;
+            _maxLocals += slots;
+            return slot;
+        }
+
+        private static int offset(int from, int to) {
+            int offset = to - from;
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                throw new RuntimeException("The method is too large for the bytecode generator.");
+            }
+            return offset;
+        }
+
+        private void u1(int value) {
+            if (_length == _bytes.length) {
+                byte[] bytes = new byte[_bytes.length * 2];
+                System.arraycopy(_bytes, 0, bytes, 0, _length);
+                _bytes = bytes;
+            }
+            _bytes[_length++] = (byte) value;
+        }
+
+        private void u2(int value) {
+            u1(value >> 8);
+            u1(value);
+        }
+
+        private byte[] bytes() {
+            if (_length > 0xFFFF) {
+                throw new RuntimeException("The method is too large for the bytecode generator.");
+            }
+            byte[] bytes = new byte[_length];
+            System.arraycopy(_bytes, 0, bytes, 0, _length);
+            return bytes;
+        }
+
+    }
+
+    private static final class Label {
+
+        private int _position = -1;
+        private final List<Integer> _branches = new ArrayList<>();
+
+    }
+
+    private static final class Loader extends ClassLoader {
+
+        private Loader() {
+            super(BytecodeGenerator.class.getClassLoader());
+        }
+
+        private Class<?> define(byte[] bytes) {
+            return defineClass(CLASS, bytes, 0, bytes.length);
+        }
+
+    }
+
+}
@@ -0,0 +1,670 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An alternative execution engine to the {@link Interpreter}. The source is
+ * compiled once into a tree of closures in which operators, call targets and
+ * variable slots are already resolved, so executing it involves no visitor
+ * dispatch, operator switches or scope lookups for locals.
+ * <p>
+ * A compiled {@link Program} follows the interpreter's semantics: structs,
+ * fields and methods are defined in a fresh scope on each execution, errors
+ * are raised at the same points with the same messages, and the result of
+ * {@code main()} is returned. Struct instances use the {@link Shape} layout
+ * of their struct, and since the struct of a method is known when it is
+ * compiled, its unqualified fields are bound to slots of the instance.
+ */
+public final class ClosureCompiler {
+
+    private final Map<String, Integer> _globals = new HashMap<>();
+    private final Map<String, Integer> _functions = new HashMap<>();
+    private final Map<String, Method> _methods = new HashMap<>();
+    private final Map<String, Struct> _structs = new HashMap<>();
+    private final List<Struct> _definitions = new ArrayList<>();
+    private final Deque<Map<String, Integer>> _blocks = new ArrayDeque<>();
+    private Struct _self = null; // the struct whose fields or methods are being compiled
+    private int _frameSize;
+
+    private ClosureCompiler() {
+    }
+
+    public static Program compile(Ast.Source ast) {
+        return new ClosureCompiler().source(ast);
+    }
+
+    private Program source(Ast.Source ast) {
+        List<Struct> structs = structs(ast.getStructs());
+        for (Ast.Field field : ast.getFields()) {
+            _globals.putIfAbsent(field.getName(), _globals.size());
+        }
+        List<Method> methods = new ArrayList<>();
+        for (Ast.Method method : ast.getMethods()) {
+            Method compiled = new Method(method.getName(), method.getParameters().size());
+            compiled._structs = structs(method.getStructs());
+            _methods.putIfAbsent(method.getName() + "/" + compiled._arity, compiled);
+            methods.add(compiled);
+        }
+        for (Struct struct : _definitions) {
+            struct(struct);
+        }
+
+        List<Expression> fields = new ArrayList<>();
+        for (Ast.Field field : ast.getFields()) {
+            fields.add(field.getValue().isPresent() ? expression(field.getValue().get()) : frame -> Environment.NIL);
+        }
+        for (int i = 0; i < methods.size(); i++) {
+            method(methods.get(i), ast.getMethods().get(i));
+        }
+
+        int[] fieldSlots = ast.getFields().stream().mapToInt(field -> _globals.get(field.getName())).toArray();
+        return new Program(ast, structs, fields, methods, fieldSlots, _globals.size(), _functions.size(), _definitions.size());
+    }
+
+    /**
+     * Collects the structs defined by a source or method, in the order the
+     * interpreter defines them. A struct it would reject is kept with the
+     * error to raise when the program reaches its definition.
+     */
+    private List<Struct> structs(List<Ast.Struct> asts) {
+        if (asts == null) {
+            return List.of();
+        }
+        List<Struct> structs = new ArrayList<>();
+        for (Ast.Struct ast : asts) {
+            String error = null;
+            if (_structs.containsKey(ast.getName())) {
+                error = "The struct " + ast.getName() + " is already defined.";
+            } else {
+                for (int i = 0; i < ast.getFields().size(); i++) {
+                    if (ast.getShape().getSlot(ast.getFields().get(i).getName()) != i) {
+                        error = "The variable " + ast.getFields().get(i).getName() + " is already defined in this scope.";
+                        break;
+                    }
+                }
+            }
+            Struct struct = new Struct(ast, _definitions.size(), error);
+            if (error == null) {
+                _structs.put(ast.getName(), struct);
+            }
+            _definitions.add(struct);
+            structs.add(struct);
+        }
+        return structs;
+    }
+
+    private void struct(Struct struct) {
+        _self = struct;
+        List<Ast.Field> fields = struct._ast.getFields();
+        struct._fields = new Expression[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            if (fields.get(i).getValue().isPresent()) {
+                struct._fields[i] = expression(fields.get(i).getValue().get());
+            }
+        }
+        for (Ast.Method method : struct._ast.getMethods()) {
+            Method compiled = new Method(method.getName(), method.getParameters().size());
+            struct._links.putIfAbsent(method.getName() + "/" + compiled._arity, compiled);
+            struct._methods.add(compiled);
+        }
+        for (int i = 0; i < struct._methods.size(); i++) {
+            method(struct._methods.get(i), struct._ast.getMethods().get(i));
+        }
+        _self = null;
+    }
+
+    private void method(Method compiled, Ast.Method ast) {
+        _frameSize = 0;
+        Map<String, Integer> parameters = new HashMap<>();
+        _blocks.push(parameters);
+        for (String parameter : ast.getParameters()) {
+            if (parameters.putIfAbsent(parameter, parameters.size()) != null) {
+                compiled._duplicate = parameter;
+            }
+        }
+        _frameSize = parameters.size();
+        compiled._body = block(ast.getStatements());
+        compiled._frameSize = _frameSize;
+        _blocks.pop();
+    }
+
+    private Statement statement(Ast.Stmt ast) {
+        if (ast instanceof Ast.Stmt.Expression) {
+            Expression expression = expression(((Ast.Stmt.Expression) ast).getExpression());
+            return frame -> {
+                expression.evaluate(frame);
+                return null;
+            };
+        } else if (ast instanceof Ast.Stmt.Declaration) {
+            return declaration((Ast.Stmt.Declaration) ast);
+        } else if (ast instanceof Ast.Stmt.Assignment) {
+            return assignment((Ast.Stmt.Assignment) ast);
+        } else if (ast instanceof Ast.Stmt.If) {
+            return ifStatement((Ast.Stmt.If) ast);
+        } else if (ast instanceof Ast.Stmt.For) {
+            return forStatement((Ast.Stmt.For) ast);
+        } else if (ast instanceof Ast.Stmt.While) {
+            return whileStatement((Ast.Stmt.While) ast);
+        } else if (ast instanceof Ast.Stmt.Return) {
+            Expression value = expression(((Ast.Stmt.Return) ast).getValue());
+            return value::evaluate;
+        } else {
+            throw new AssertionError("Unimplemented AST type: " + ast.getClass().getName() + ".");
+        }
+    }
+
+    private Statement declaration(Ast.Stmt.Declaration ast) {
+        Expression value;
+        if (ast.getValue().isPresent()) {
+            value = expression(ast.getValue().get());
+        } else {
+            Struct struct = ast.getTypeName().isPresent() ? _structs.get(ast.getTypeName().get()) : null;
+            value = struct != null ? frame -> frame._program.instantiate(struct) : frame -> Environment.NIL;
+        }
+        Map<String, Integer> block = _blocks.peek();
+        if (block.containsKey(ast.getName())) {
+            String message = "The variable " + ast.getName() + " is already defined in this scope.";
+            return frame -> {
+                value.evaluate(frame);
+                throw new RuntimeException(message);
+            };
+        }
+        int slot = _frameSize++;
+        block.put(ast.getName(), slot);
+        return frame -> {
+            frame._slots[slot] = value.evaluate(frame);
+            return null;
+        };
+    }
+
+    private Statement assignment(Ast.Stmt.Assignment ast) {
+        if (!ast.getReceiver().getClass().equals(Ast.Expr.Access.class)) {
+            return frame -> {
+                throw new RuntimeException("Operand is not of an assignable type.");
+            };
+        }
+
+        Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+        Expression value = expression(ast.getValue());
+        String name = receiver.getName();
+        if (receiver.getReceiver().isPresent()) {
+            Expression object = expression(receiver.getReceiver().get());
+            return frame -> {
+                Environment.PlcObject result = value.evaluate(frame);
+                object.evaluate(frame).setField(name, result);
+                return null;
+            };
+        }
+
+        int[] local = lookup(name);
+        if (local != null) {
+            int depth = local[0];
+            int slot = local[1];
+            return frame -> {
+                frame.ancestor(depth)._slots[slot] = value.evaluate(frame);
+                return null;
+            };
+        }
+        int field = _self != null ? _self._ast.getShape().getSlot(name) : -1;
+        if (field >= 0) {
+            return frame -> {
+                frame._self.setField(field, value.evaluate(frame));
+                return null;
+            };
+        }
+        int global = _globals.getOrDefault(name, -1);
+        return frame -> {
+            Environment.PlcObject result = value.evaluate(frame);
+            frame._program.variable(global, name).setValue(result);
+            return null;
+        };
+    }
+
+    private Statement ifStatement(Ast.Stmt.If ast) {
+        Expression condition = expression(ast.getCondition());
+        Statement thenStatements = scoped(ast.getThenStatements());
+        Statement elseStatements = scoped(ast.getElseStatements());
+        return frame -> Interpreter.requireType(Boolean.class, condition.evaluate(frame))
+                ? thenStatements.execute(frame)
+                : elseStatements.execute(frame);
+    }
+
+    private Statement forStatement(Ast.Stmt.For ast) {
+        Expression value = expression(ast.getValue());
+        Map<String, Integer> block = new HashMap<>();
+        block.put(ast.getName(), 0);
+        int enclosingSize = _frameSize;
+        _frameSize = 1;
+        _blocks.push(block);
+        Statement body = block(ast.getStatements());
+        int size = _frameSize;
+        _blocks.pop();
+        _frameSize = enclosingSize;
+
+        return frame -> {
+            @SuppressWarnings("unchecked")
+            Iterable<Environment.PlcObject> iterable = Interpreter.requireType(Iterable.class, value.evaluate(frame));
+            for (Environment.PlcObject element : iterable) {
+                Frame iteration = new Frame(frame, size);
+                iteration._slots[0] = element;
+                Environment.PlcObject result = body.execute(iteration);
+                if (result != null) {
+                    return result;
+                }
+            }
+            return null;
+        };
+    }
+
+    private Statement whileStatement(Ast.Stmt.While ast) {
+        Expression condition = expression(ast.getCondition());
+        Statement body = scoped(ast.getStatements());
+        return frame -> {
+            while (Interpreter.requireType(Boolean.class, condition.evaluate(frame))) {
+                Environment.PlcObject result = body.execute(frame);
+                if (result != null) {
+                    return result;
+                }
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Compiles the body of an if or while statement. A body which declares
+     * variables gets a fresh frame on every execution, as the interpreter
+     * creates a fresh scope; any other body runs in the enclosing frame.
+     */
+    private Statement scoped(List<Ast.Stmt> statements) {
+        if (statements.stream().noneMatch(s -> s instanceof Ast.Stmt.Declaration)) {
+            return block(statements);
+        }
+
+        int enclosingSize = _frameSize;
+        _frameSize = 0;
+        _blocks.push(new HashMap<>());
+        Statement body = block(statements);
+        int size = _frameSize;
+        _blocks.pop();
+        _frameSize = enclosingSize;
+
+        return frame -> body.execute(new Frame(frame, size));
+    }
+
+    private Statement block(List<Ast.Stmt> statements) {
+        Statement[] compiled = new Statement[statements.size()];
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = statement(statements.get(i));
+        }
+        if (compiled.length == 1) {
+            return compiled[0];
+        }
+        return frame -> {
+            for (Statement statement : compiled) {
+                Environment.PlcObject result = statement.execute(frame);
+                if (result != null) {
+                    return result;
+                }
+            }
+            return null;
+        };
+    }
+
+    private Expression expression(Ast.Expr ast) {
+        if (ast instanceof Ast.Expr.Literal) {
+            Object literal = ((Ast.Expr.Literal) ast).getLiteral();
+            Environment.PlcObject value = literal == null ? Environment.NIL : Environment.create(literal);
+            return frame -> value;
+        } else if (ast instanceof Ast.Expr.Group) {
+            return expression(((Ast.Expr.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expr.Binary) {
+            return binary((Ast.Expr.Binary) ast);
+        } else if (ast instanceof Ast.Expr.Access) {
+            return access((Ast.Expr.Access) ast);
+        } else if (ast instanceof Ast.Expr.Function) {
+            return function((Ast.Expr.Function) ast);
+        } else {
+            throw new AssertionError("Unimplemented AST type: " + ast.getClass().getName() + ".");
+        }
+    }
+
+    private Expression binary(Ast.Expr.Binary ast) {
+        Expression left = expression(ast.getLeft());
+        Expression right = expression(ast.getRight());
+        String operator = ast.getOperator();
+        switch (operator) {
+            case "AND":
+                return frame -> Environment.create(Interpreter.requireType(Boolean.class, left.evaluate(frame))
+                        && Interpreter.requireType(Boolean.class, right.evaluate(frame)));
+            case "OR":
+                return frame -> Environment.create(Interpreter.requireType(Boolean.class, left.evaluate(frame))
+                        || Interpreter.requireType(Boolean.class, right.evaluate(frame)));
+            case "<":
+            case "<=":
+            case ">":
+            case ">=":
+                return frame -> Interpreter.compare(operator, left.evaluate(frame), right.evaluate(frame));
+            case "==":
+                return frame -> Environment.create(Interpreter.equal(left.evaluate(frame), right.evaluate(frame)));
+            case "!=":
+                return frame -> Environment.create(!Interpreter.equal(left.evaluate(frame), right.evaluate(frame)));
+            case "+":
+                return frame -> Interpreter.add(left.evaluate(frame), right.evaluate(frame));
+            case "-":
+                return frame -> Interpreter.subtract(left.evaluate(frame), right.evaluate(frame));
+            case "*":
+                return frame -> Interpreter.multiply(left.evaluate(frame), right.evaluate(frame));
+            default:
+                return frame -> Interpreter.divide(left.evaluate(frame), right.evaluate(frame));
+        }
+    }
+
+    private Expression access(Ast.Expr.Access ast) {
+        String name = ast.getName();
+        if (ast.getReceiver().isPresent()) {
+            Expression receiver = expression(ast.getReceiver().get());
+            return frame -> receiver.evaluate(frame).getField(name).getValue();
+        }
+
+        int[] local = lookup(name);
+        if (local != null) {
+            int depth = local[0];
+            int slot = local[1];
+            if (depth == 0) {
+                return frame -> frame._slots[slot];
+            }
+            return frame -> frame.ancestor(depth)._slots[slot];
+        }
+        int field = _self != null ? _self._ast.getShape().getSlot(name) : -1;
+        if (field >= 0) {
+            return frame -> frame._self.getField(field);
+        }
+        int global = _globals.getOrDefault(name, -1);
+        return frame -> frame._program.variable(global, name).getValue();
+    }
+
+    private Expression function(Ast.Expr.Function ast) {
+        String name = ast.getName();
+        Expression[] arguments = new Expression[ast.getArguments().size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = expression(ast.getArguments().get(i));
+        }
+
+        if (ast.getReceiver().isPresent()) {
+            Expression receiver = expression(ast.getReceiver().get());
+            return frame -> {
+                Environment.PlcObject[] values = evaluate(arguments, frame);
+                return receiver.evaluate(frame).callMethod(name, Arrays.asList(values));
+            };
+        }
+
+        String signature = name + "/" + arguments.length;
+        Method member = _self != null ? _self._links.get(signature) : null;
+        if (member != null) {
+            return frame -> member.invoke(frame._program, frame._self, evaluate(arguments, frame));
+        }
+        Method method = _methods.get(signature);
+        int function = _functions.computeIfAbsent(signature, k -> _functions.size());
+        return frame -> {
+            Environment.PlcObject[] values = evaluate(arguments, frame);
+            Program program = frame._program;
+            if (method != null && program._defined) {
+                return method.invoke(program, null, values);
+            }
+            return program.function(function, name, arguments.length).invoke(Arrays.asList(values));
+        };
+    }
+
+    private static Environment.PlcObject[] evaluate(Expression[] expressions, Frame frame) {
+        Environment.PlcObject[] values = new Environment.PlcObject[expressions.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = expressions[i].evaluate(frame);
+        }
+        return values;
+    }
+
+    /**
+     * Returns the (depth, slot) of a local variable, or null for globals.
+     */
+    private int[] lookup(String name) {
+        int depth = 0;
+        for (Map<String, Integer> block : _blocks) {
+            Integer slot = block.get(name);
+            if (slot != null) {
+                return new int[] {depth, slot};
+            }
+            depth++;
+        }
+        return null;
+    }
+
+    /**
+     * A compiled source, which may be executed any number of times.
+     */
+    public static final class Program {
+
+        private final Ast.Source _ast;
+        private final List<Struct> _structs;
+        private final List<Expression> _fields;
+        private final List<Method> _methods;
+        private final int[] _fieldSlots;
+        private final int _globalCount;
+        private final int _functionCount;
+        private final int _structCount;
+
+        private Scope _scope;
+        private Environment.Type[] _types;
+        private Environment.Variable[] _variables;
+        private Environment.Function[] _functions;
+        private boolean _defined;
+
+        private Program(Ast.Source ast, List<Struct> structs, List<Expression> fields, List<Method> methods, int[] fieldSlots, int globalCount, int functionCount, int structCount) {
+            _ast = ast;
+            _structs = structs;
+            _fields = fields;
+            _methods = methods;
+            _fieldSlots = fieldSlots;
+            _globalCount = globalCount;
+            _functionCount = functionCount;
+            _structCount = structCount;
+        }
+
+        /**
+         * Defines the fields and methods in a new child of {@code parent} and
+         * returns the result of calling {@code main()}.
+         */
+        public Environment.PlcObject execute(Scope parent) {
+            Program program = new Program(_ast, _structs, _fields, _methods, _fieldSlots, _globalCount, _functionCount, _structCount);
+            return program.run(parent);
+        }
+
+        private Environment.PlcObject run(Scope parent) {
+            _scope = new Scope(parent);
+            _scope.defineFunction("print", 1, args -> {
+                System.out.println(args.get(0).getValue());
+                return Environment.NIL;
+            });
+            _variables = new Environment.Variable[_globalCount];
+            _functions = new Environment.Function[_functionCount];
+            _types = new Environment.Type[_structCount];
+
+            for (Struct struct : _structs) {
+                define(struct);
+            }
+            Frame root = new Frame(this, null, 0);
+            for (int i = 0; i < _fields.size(); i++) {
+                String name = _ast.getFields().get(i).getName();
+                Environment.PlcObject value = _fields.get(i).evaluate(root);
+                _variables[_fieldSlots[i]] = _scope.defineVariable(name, name, Environment.Type.ANY, value);
+            }
+            for (Method method : _methods) {
+                for (Struct struct : method._structs) {
+                    define(struct);
+                }
+                _scope.defineFunction(method._name, method._arity, args -> method.invoke(this, null, args.toArray(new Environment.PlcObject[0])));
+            }
+            _defined = true;
+
+            return _scope.lookupFunction("main", 0).invoke(new ArrayList<>());
+        }
+
+        /**
+         * Defines the type of a struct for this execution, whose methods take
+         * the instance as their first argument.
+         */
+        private void define(Struct struct) {
+            if (struct._error != null) {
+                throw new RuntimeException(struct._error);
+            }
+            Scope methods = new Scope(null);
+            Environment.Type type = new Environment.Type(struct._ast.getName(), struct._ast.getName(), methods, struct._ast.getShape());
+            for (Method method : struct._methods) {
+                methods.defineFunction(method._name, method._arity, args -> method.invoke(this, args.get(0),
+                        args.subList(1, args.size()).toArray(new Environment.PlcObject[0])));
+            }
+            _types[struct._index] = type;
+        }
+
+        /**
+         * Creates an instance of a struct, initializing its fields in order
+         * as in a method of the instance, so they may use earlier ones.
+         */
+        private Environment.PlcObject instantiate(Struct struct) {
+            Environment.PlcObject[] values = new Environment.PlcObject[struct._fields.length];
+            Arrays.fill(values, Environment.NIL);
+            Environment.PlcObject instance = new Environment.PlcObject(_types[struct._index], values);
+            Frame fields = new Frame(this, instance, 0);
+            for (int i = 0; i < values.length; i++) {
+                if (struct._fields[i] != null) {
+                    values[i] = struct._fields[i].evaluate(fields);
+                }
+            }
+            return instance;
+        }
+
+        private Environment.Variable variable(int index, String name) {
+            Environment.Variable variable = index >= 0 ? _variables[index] : null;
+            return variable != null ? variable : _scope.lookupVariable(name);
+        }
+
+        private Environment.Function function(int index, String name, int arity) {
+            Environment.Function function = _functions[index];
+            if (function == null) {
+                function = _scope.lookupFunction(name, arity);
+                _functions[index] = function;
+            }
+            return function;
+        }
+
+    }
+
+    /**
+     * A compiled method, linked directly by the call sites which target it.
+     */
+    private static final class Method {
+
+        private final String _name;
+        private final int _arity;
+        private List<Struct> _structs = List.of(); // defined just before the method
+        private String _duplicate;
+        private int _frameSize;
+        private Statement _body;
+
+        private Method(String name, int arity) {
+            _name = name;
+            _arity = arity;
+        }
+
+        private Environment.PlcObject invoke(Program program, Environment.PlcObject self, Environment.PlcObject[] arguments) {
+            if (_duplicate != null) {
+                throw new RuntimeException("The variable " + _duplicate + " is already defined in this scope.");
+            }
+            Frame frame = new Frame(program, self, _frameSize);
+            System.arraycopy(arguments, 0, frame._slots, 0, _arity);
+            Environment.PlcObject result = _body.execute(frame);
+            return result != null ? result : Environment.NIL;
+        }
+
+    }
+
+    /**
+     * A compiled struct. Its methods are linked directly by the unqualified
+     * calls within it, and its type is defined anew by each execution.
+     */
+    private static final class Struct {
+
+        private final Ast.Struct _ast;
+        private final int _index;
+        private final String _error;
+        private final List<Method> _methods = new ArrayList<>();
+        private final Map<String, Method> _links = new HashMap<>();
+        private Expression[] _fields; // null where a field has no value
+
+        private Struct(Ast.Struct ast, int index, String error) {
+            _ast = ast;
+            _index = index;
+            _error = error;
+        }
+
+    }
+
+    /**
+     * The locals of a block, chained to those of the enclosing blocks, and
+     * the instance whose method or field is being executed, if any.
+     */
+    private static final class Frame {
+
+        private final Program _program;
+        private final Frame _parent;
+        private final Environment.PlcObject _self;
+        private final Environment.PlcObject[] _slots;
+
+        private Frame(Program program, Environment.PlcObject self, int size) {
+            _program = program;
+            _parent = null;
+            _self = self;
+            _slots = new Environment.PlcObject[size];
+        }
+
+        private Frame(Frame parent, int size) {
+            _program = parent._program;
+            _parent = parent;
+            _self = parent._self;
+            _slots = new Environment.PlcObject[size];
+        }
+
+        private Frame ancestor(int depth) {
+            Frame frame = this;
+            for (int i = 0; i < depth; i++) {
+                frame = frame._parent;
+            }
+            return frame;
+        }
+
+    }
+
+    @FunctionalInterface
+    private interface Expression {
+
+        Environment.PlcObject evaluate(Frame frame);
+
+    }
+
+    /**
+     * A compiled statement, returning the value of a RETURN statement which
+     * completes it or null if it completes normally.
+     */
+    @FunctionalInterface
+    private interface Statement {
+
+        Environment.PlcObject execute(Frame frame);
+
+    }
+
+}
@@ -0,0 +1,540 @@
+package plc.project;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A table-driven alternative to {@link Lexer}. Instead of matching every
+ * character against a handful of regular expressions, each character is
+ * mapped to a character class through a precomputed table and the token is
+ * recognized by an explicit state machine with maximal munch, backtracking to
+ * the last accepting state.
+ * <p>
+ * The lexer emits the same tokens as {@link Lexer#lex()} and throws
+ * {@link ParseException}s with the same messages and indices. The only
+ * difference is on inputs the regex lexer never finishes: comments containing
+ * a carriage return run until the next line feed, and stray line separator
+ * characters ({@code U+0085}, {@code U+2028}, {@code U+2029}) are rejected.
+ */
+public final class DfaLexer {
+
+    // character classes
+    private static final int OTHER = 0;
+    private static final int LETTER = 1;
+    private static final int ESCAPE_LETTER = 2; // b, n, r, t
+    private static final int DIGIT = 3;
+    private static final int PLUS = 4;
+    private static final int HYPHEN = 5;
+    private static final int DOT = 6;
+    private static final int SINGLE_QUOTE = 7;
+    private static final int DOUBLE_QUOTE = 8;
+    private static final int BACKSLASH = 9;
+    private static final int LINE_FEED = 10;
+    private static final int CARRIAGE_RETURN = 11;
+    private static final int BLANK = 12; // space, backspace, tab
+    private static final int ANGLE = 13; // <, >
+    private static final int BANG = 14;
+    private static final int EQUALS = 15;
+    private static final int LINE_SEPARATOR = 16;
+    private static final int CLASS_COUNT = 17;
+
+    // states
+    private static final int DEAD = -1;
+    private static final int START = 0;
+    private static final int WHITESPACE = 1;
+    private static final int IDENTIFIER = 2;
+    private static final int SIGN = 3;
+    private static final int INTEGER = 4;
+    private static final int INTEGER_DOT = 5;
+    private static final int DECIMAL = 6;
+    private static final int CHARACTER_OPEN = 7;
+    private static final int CHARACTER_ESCAPE = 8;
+    private static final int CHARACTER_BODY = 9;
+    private static final int CHARACTER_CLOSE = 10;
+    private static final int STRING_BODY = 11;
+    private static final int STRING_ESCAPE = 12;
+    private static final int STRING_CLOSE = 13;
+    private static final int OPERATOR = 14;
+    private static final int COMPARISON = 15;
+    private static final int BANG_1 = 16;
+    private static final int BANG_2 = 17;
+    private static final int COMMENT = 18;
+    private static final int COMMENT_END = 19;
+    private static final int STATE_COUNT = 20;
+
+    private static final byte[] ASCII_CLASSES = new byte[128];
+    private static final byte[][] TRANSITIONS = new byte[STATE_COUNT][CLASS_COUNT];
+    private static final Token.Type[] EMITS = new Token.Type[STATE_COUNT];
+    private static final boolean[] SKIPS = new boolean[STATE_COUNT];
+
+    static {
+        for (char c = 'A'; c <= 'Z'; c++) {
+            ASCII_CLASSES[c] = LETTER;
+            ASCII_CLASSES[Character.toLowerCase(c)] = LETTER;
+        }
+        for (char c : "bnrt".toCharArray()) {
+            ASCII_CLASSES[c] = ESCAPE_LETTER;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            ASCII_CLASSES[c] = DIGIT;
+        }
+        ASCII_CLASSES['_'] = LETTER;
+        ASCII_CLASSES['+'] = PLUS;
+        ASCII_CLASSES['-'] = HYPHEN;
+        ASCII_CLASSES['.'] = DOT;
+        ASCII_CLASSES['\''] = SINGLE_QUOTE;
+        ASCII_CLASSES['"'] = DOUBLE_QUOTE;
+        ASCII_CLASSES['\\'] = BACKSLASH;
+        ASCII_CLASSES['\n'] = LINE_FEED;
+        ASCII_CLASSES['\r'] = CARRIAGE_RETURN;
+        ASCII_CLASSES[' '] = BLANK;
+        ASCII_CLASSES['\b'] = BLANK;
+        ASCII_CLASSES['\t'] = BLANK;
+        ASCII_CLASSES['<'] = ANGLE;
+        ASCII_CLASSES['>'] = ANGLE;
+        ASCII_CLASSES['!'] = BANG;
+        ASCII_CLASSES['='] = EQUALS;
+
+        for (byte[] row : TRANSITIONS) {
+            Arrays.fill(row, (byte) DEAD);
+        }
+
+        // anything without a more specific rule is a single character operator
+        Arrays.fill(TRANSITIONS[START], (byte) OPERATOR);
+        TRANSITIONS[START][LINE_SEPARATOR] = DEAD;
+        transition(START, WHITESPACE, LINE_FEED, CARRIAGE_RETURN, BLANK);
+        transition(START, IDENTIFIER, LETTER, ESCAPE_LETTER);
+        transition(START, SIGN, PLUS, HYPHEN);
+        transition(START, INTEGER, DIGIT);
+        transition(START, CHARACTER_OPEN, SINGLE_QUOTE);
+        transition(START, STRING_BODY, DOUBLE_QUOTE);
+        transition(START, COMPARISON, ANGLE, EQUALS);
+        transition(START, BANG_1, BANG);
+
+        transition(IDENTIFIER, IDENTIFIER, LETTER, ESCAPE_LETTER, DIGIT, HYPHEN);
+
+        transition(SIGN, INTEGER, DIGIT);
+        transition(INTEGER, INTEGER, DIGIT);
+        transition(INTEGER, INTEGER_DOT, DOT);
+        transition(INTEGER_DOT, DECIMAL, DIGIT);
+        transition(DECIMAL, DECIMAL, DIGIT);
+
+        Arrays.fill(TRANSITIONS[CHARACTER_OPEN], (byte) CHARACTER_BODY);
+        transition(CHARACTER_OPEN, DEAD, SINGLE_QUOTE, LINE_FEED, CARRIAGE_RETURN);
+        transition(CHARACTER_OPEN, CHARACTER_ESCAPE, BACKSLASH);
+        transition(CHARACTER_ESCAPE, CHARACTER_BODY, ESCAPE_LETTER, SINGLE_QUOTE, DOUBLE_QUOTE, BACKSLASH);
+        transition(CHARACTER_BODY, CHARACTER_CLOSE, SINGLE_QUOTE);
+
+        Arrays.fill(TRANSITIONS[STRING_BODY], (byte) STRING_BODY);
+        transition(STRING_BODY, DEAD, LINE_FEED, CARRIAGE_RETURN);
+        transition(STRING_BODY, STRING_ESCAPE, BACKSLASH);
+        transition(STRING_BODY, STRING_CLOSE, DOUBLE_QUOTE);
+        transition(STRING_ESCAPE, STRING_BODY, ESCAPE_LETTER, SINGLE_QUOTE, DOUBLE_QUOTE, BACKSLASH);
+
+        transition(COMPARISON, OPERATOR, EQUALS);
+        transition(BANG_1, OPERATOR, EQUALS);
+        transition(BANG_1, BANG_2, BANG);
+        transition(BANG_2, COMMENT, BANG);
+        Arrays.fill(TRANSITIONS[COMMENT], (byte) COMMENT);
+        transition(COMMENT, COMMENT_END, LINE_FEED);
+
+        EMITS[IDENTIFIER] = Token.Type.IDENTIFIER;
+        EMITS[INTEGER] = Token.Type.INTEGER;
+        EMITS[DECIMAL] = Token.Type.DECIMAL;
+        EMITS[CHARACTER_CLOSE] = Token.Type.CHARACTER;
+        EMITS[STRING_CLOSE] = Token.Type.STRING;
+        EMITS[SIGN] = Token.Type.OPERATOR;
+        EMITS[OPERATOR] = Token.Type.OPERATOR;
+        EMITS[COMPARISON] = Token.Type.OPERATOR;
+        EMITS[BANG_1] = Token.Type.OPERATOR;
+
+        SKIPS[WHITESPACE] = true;
+        SKIPS[COMMENT] = true;
+        SKIPS[COMMENT_END] = true;
+    }
+
+    private static void transition(int from, int to, int... classes) {
+        for (int c : classes) {
+            TRANSITIONS[from][c] = (byte) to;
+        }
+    }
+
+    private static int classOf(char c) {
+        if (c < ASCII_CLASSES.length) {
+            return ASCII_CLASSES[c];
+        }
+        return c == '\u0085' || c == '\u2028' || c == '\u2029' ? LINE_SEPARATOR : OTHER;
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MIN_CHUNK = 1 << 15;
+
+    private final CharSequence _input;
+    private final Reader _reader;
+    private char[] _buffer;
+    private int _bufferStart = 0; // index of _buffer[0] in the input
+    private int _length;
+    private boolean _exhausted;
+    private int _index = 0;
+    private int _mark = 0; // start of the token being lexed, kept in the buffer
+    private int _limit = Integer.MAX_VALUE; // no token starts at or after this index
+
+    /**
+     * Lexes an in-memory input such as a {@link String} or a
+     * {@link java.nio.CharBuffer}.
+     */
+    public DfaLexer(CharSequence input) {
+        _input = input;
+        _reader = null;
+        _length = input.length();
+        _exhausted = true;
+    }
+
+    /**
+     * Lexes the characters of {@code reader} on demand. Only the token being
+     * lexed is kept in memory, so the buffer grows with the longest token
+     * rather than the input.
+     */
+    public DfaLexer(Reader reader) {
+        _input = null;
+        _reader = reader;
+        _buffer = new char[BUFFER_SIZE];
+        _length = 0;
+        _exhausted = false;
+    }
+
+    /**
+     * Creates a streaming lexer over a memory-mapped UTF-8 file, decoding it
+     * incrementally instead of reading it into a string first.
+     */
+    public static DfaLexer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new DfaLexer(new DecodingReader(bytes, StandardCharsets.UTF_8.newDecoder()));
+        }
+    }
+
+    /**
+     * Lexes the chunk of {@code input} from {@code start}, which must be the
+     * start of a token, up to the last token starting before {@code limit}.
+     */
+    private DfaLexer(CharSequence input, int start, int limit) {
+        this(input);
+        _index = start;
+        _limit = limit;
+    }
+
+    /**
+     * Lexes the whole input, skipping over whitespace and comments. An
+     * in-memory input is lexed into a {@link TokenBuffer} over it, so no
+     * token or literal is created until one is asked for.
+     */
+    public List<Token> lex() {
+        if (_reader == null) {
+            return lexBuffer();
+        }
+
+        List<Token> tokens = new ArrayList<>();
+
+        Token token;
+        while ((token = lexToken()) != null) {
+            tokens.add(token);
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Lexes an in-memory input in chunks on {@code pool}, producing the same
+     * tokens as {@link #lex()}. The input is split after line feeds: no token
+     * can span one, as string and character literals end with an error at a
+     * line feed and comments end with it, so lexing can restart there from
+     * the initial state. The chunks are lexed over the whole input, so token
+     * indices need no correction and the diagnostics of a literal at the end
+     * of a chunk see the same characters. When several chunks fail, the
+     * error of the first one is thrown, which is where the sequential lexer
+     * stops.
+     * <p>
+     * A reader input, one too small to be worth splitting, or one given a
+     * single threaded pool is lexed sequentially.
+     */
+    public List<Token> lex(ForkJoinPool pool) {
+        if (_reader != null || _length < 2 * MIN_CHUNK || pool.getParallelism() < 2) {
+            return lex();
+        }
+
+        int chunks = Math.min(pool.getParallelism() * 4, _length / MIN_CHUNK);
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(_index);
+        for (int i = 1; i < chunks; i++) {
+            int bound = split(Math.max(bounds.get(bounds.size() - 1), (int) ((long) _length * i / chunks)));
+            if (bound > bounds.get(bounds.size() - 1) && bound < _length) {
+                bounds.add(bound);
+            }
+        }
+        bounds.add(_length);
+
+        List<ForkJoinTask<TokenBuffer>> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.size(); i++) {
+            DfaLexer lexer = new DfaLexer(_input, bounds.get(i), bounds.get(i + 1));
+            tasks.add(pool.submit(lexer::lexBuffer));
+        }
+
+        TokenBuffer tokens = null;
+        for (ForkJoinTask<TokenBuffer> task : tasks) {
+            TokenBuffer chunk;
+            try {
+                chunk = task.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            if (tokens == null) {
+                tokens = chunk;
+            } else {
+                tokens.append(chunk);
+            }
+        }
+        _index = _length;
+        return tokens;
+    }
+
+    /**
+     * Returns the index just past the first line feed at or after
+     * {@code index}, or the end of the input if there is none.
+     */
+    private int split(int index) {
+        for (int i = index; i < _length; i++) {
+            if (_input.charAt(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return _length;
+    }
+
+    private TokenBuffer lexBuffer() {
+        TokenBuffer tokens = new TokenBuffer(_input);
+        Token.Type type;
+        while ((type = scan()) != null) {
+            tokens.add(type, _mark, _index);
+        }
+        return tokens;
+    }
+
+    /**
+     * Lexes the next token, skipping over any whitespace and comments before
+     * it. Returns {@code null} once the input is exhausted, which makes
+     * {@code lexer::lexToken} usable as the token source of a streaming
+     * {@link ParserCompiler}.
+     */
+    public Token lexToken() throws ParseException {
+        Token.Type type = scan();
+        return type == null ? null : new Token(type, literal(_mark, _index), _mark);
+    }
+
+    /**
+     * Advances past the next token, which then spans {@code _mark} to
+     * {@code _index}, and returns its type, or {@code null} once the input is
+     * exhausted.
+     */
+    private Token.Type scan() throws ParseException {
+        while (_index < _limit && has(_index)) {
+            int start = _index;
+            int state = START;
+            int accepted = DEAD;
+            int end = start;
+            _mark = start;
+
+            for (int i = start; has(i); i++) {
+                state = TRANSITIONS[state][classOf(charAt(i))];
+                if (state == DEAD) {
+                    break;
+                }
+                if (EMITS[state] != null || SKIPS[state]) {
+                    accepted = state;
+                    end = i + 1;
+                }
+            }
+
+            if (accepted == DEAD) {
+                throw error(start);
+            }
+
+            _index = end;
+            if (!SKIPS[accepted]) {
+                return EMITS[accepted];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Builds the exception for a token starting at {@code start} that never
+     * reached an accepting state, mirroring the diagnostics of {@link Lexer}.
+     */
+    private ParseException error(int start) {
+        char first = charAt(start);
+        if (first == '\'') {
+            return characterError(start + 1);
+        } else if (first == '"') {
+            return stringError(start + 1);
+        }
+        return new ParseException("Unexpected line separator character.", start);
+    }
+
+    private ParseException characterError(int index) {
+        if (has(index) && charAt(index) == '\\') {
+            return new ParseException("Character literal contains illegal token after backslash (\\): '"
+                    + (has(index + 1) && charAt(index + 1) != '\'' ? String.valueOf(charAt(index + 1)) : "")
+                    + "'. Possible alternatives: b, n, r, t, ', \", \\.",
+                    index + 1);
+        }
+        return new ParseException("Character literal is not terminated. "
+                + "Did you forget the closing single quote (') after '"
+                + (has(index) ? charAt(index) : '\0')
+                + "'?",
+                index + 1);
+    }
+
+    private ParseException stringError(int index) {
+        int state = STRING_BODY;
+        while (has(index)) {
+            int next = TRANSITIONS[state][classOf(charAt(index))];
+            if (next == DEAD) {
+                break;
+            }
+            state = next;
+            index++;
+        }
+
+        if (state == STRING_ESCAPE) { // index is just past the backslash
+            return new ParseException("String literal contains illegal token after backslash (\\): '"
+                    + (has(index) ? charAt(index) : '\\')
+                    + "'. Possible alternatives: b, n, r, t, ', \", \\.",
+                    index);
+        }
+        return new ParseException("String literal is not terminated. "
+                + "Did you forget the closing double quote (\") after '"
+                + charAt(index - 1)
+                + "'?",
+                index);
+    }
+
+    private boolean has(int index) {
+        return index < _length || !_exhausted && fill(index);
+    }
+
+    private char charAt(int index) {
+        return _reader == null ? _input.charAt(index) : _buffer[index - _bufferStart];
+    }
+
+    private String literal(int start, int end) {
+        return _reader == null
+                ? _input.subSequence(start, end).toString()
+                : new String(_buffer, start - _bufferStart, end - start);
+    }
+
+    /**
+     * Reads from the reader until {@code index} is buffered or the input is
+     * exhausted. Characters before the current token are discarded to make
+     * room, and the buffer only grows when the token itself does not fit.
+     * At least two chars are always free, so a surrogate pair fits.
+     */
+    private boolean fill(int index) {
+        try {
+            while (index >= _length && !_exhausted) {
+                if (_buffer.length - (_length - _bufferStart) < 2) {
+                    int keep = _length - _mark;
+                    char[] buffer = keep * 2 > _buffer.length || _buffer.length - keep < 2 ? new char[_buffer.length * 2] : _buffer;
+                    System.arraycopy(_buffer, _mark - _bufferStart, buffer, 0, keep);
+                    _buffer = buffer;
+                    _bufferStart = _mark;
+                }
+                int offset = _length - _bufferStart;
+                int read = _reader.read(_buffer, offset, _buffer.length - offset);
+                if (read < 0) {
+                    _exhausted = true;
+                } else {
+                    _length += read;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return index < _length;
+    }
+
+    /**
+     * A reader decoding a byte buffer, used for memory-mapped files. A read
+     * of a single char still returns one, holding back the low surrogate of
+     * a pair for the next read.
+     */
+    private static final class DecodingReader extends Reader {
+
+        private final ByteBuffer _bytes;
+        private final CharsetDecoder _decoder;
+        private boolean _done = false;
+        private int _pending = -1; // a held back low surrogate
+
+        private DecodingReader(ByteBuffer bytes, CharsetDecoder decoder) {
+            _bytes = bytes;
+            _decoder = decoder;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            } else if (_pending >= 0) {
+                buffer[offset] = (char) _pending;
+                _pending = -1;
+                return 1;
+            } else if (_done) {
+                return -1;
+            } else if (length == 1) {
+                char[] pair = new char[2];
+                int read = read(pair, 0, 2);
+                if (read > 0) {
+                    buffer[offset] = pair[0];
+                    _pending = read == 2 ? pair[1] : -1;
+                    return 1;
+                }
+                return read;
+            }
+            CharBuffer chars = CharBuffer.wrap(buffer, offset, length);
+            CoderResult result = _decoder.decode(_bytes, chars, true);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (!_bytes.hasRemaining()) {
+                _done = _decoder.flush(chars).isUnderflow();
+            }
+            int read = chars.position() - offset;
+            return read == 0 && _done ? -1 : read;
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
@@ -1,5 +1,6 @@
 package plc.project;
 
+import java.math.BigInteger;
 import java.util.*;
 
 public final class Environment {
@@ -13,18 +14,15 @@ public final class Environment {
 
     });
 
-    private static final Map<String, Type> _types = new HashMap<>();
+    private static final Map<String, Type> _types;
 
     static {
-        registerType(Type.ANY);
-        registerType(Type.NIL);
-        registerType(Type.INTEGER_ITERABLE);
-        registerType(Type.COMPARABLE);
-        registerType(Type.BOOLEAN);
-        registerType(Type.INTEGER);
-        registerType(Type.DECIMAL);
-        registerType(Type.CHARACTER);
-        registerType(Type.STRING);
+        Map<String, Type> types = new HashMap<>();
+        for (Type type : List.of(Type.ANY, Type.NIL, Type.INTEGER_ITERABLE, Type.COMPARABLE, Type.BOOLEAN,
+                Type.INTEGER, Type.DECIMAL, Type.CHARACTER, Type.STRING)) {
+            types.put(type.getName(), type);
+        }
+        _types = Collections.unmodifiableMap(types);
         Type.ANY._scope.defineFunction("stringify", "toString", List.of(), Type.STRING, args -> Environment.NIL);
         Type.COMPARABLE._scope.defineFunction("compare", "compareTo", Arrays.asList(Type.ANY, Type.COMPARABLE), Type.COMPARABLE, args -> Environment.NIL);
         Type.INTEGER._scope.defineFunction("compare", "compareTo", Arrays.asList(Type.ANY, Type.INTEGER), Type.INTEGER, args -> Environment.NIL);
@@ -35,36 +33,70 @@ public final class Environment {
         Type.STRING._scope.defineFunction("compare", "compareTo", Arrays.asList(Type.ANY, Type.STRING), Type.STRING, args -> Environment.NIL);
     }
 
-    public static Type getType(String name) {
-        if (!_types.containsKey(name)) {
-            return new Type(name, name, null);
-        }
+    /**
+     * Returns the built-in type with the given name, or null. The built-in
+     * types are shared by every {@link TypeRegistry} and never modified after
+     * this class is initialized.
+     */
+    static Type getBuiltinType(String name) {
         return _types.get(name);
     }
 
-    public static Type getType(String name, Scope scope) {
-        if (!_types.containsKey(name)) {
-            return new Type(name, name, scope);
+    public static final PlcObject TRUE = new PlcObject(Boolean.TRUE, 0, false);
+    public static final PlcObject FALSE = new PlcObject(Boolean.FALSE, 0, false);
+
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1023;
+    private static final PlcObject[] INTEGERS = new PlcObject[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < INTEGERS.length; i++) {
+            long value = CACHE_LOW + i;
+            INTEGERS[i] = new PlcObject(BigInteger.valueOf(value), value, true);
         }
-        return _types.get(name);
     }
 
+    /**
+     * Creates an object for a primitive value. Booleans and Integers from
+     * {@value #CACHE_LOW} to {@value #CACHE_HIGH} return shared objects, and
+     * any other value gets its scope and type only once they are asked for,
+     * so evaluating an expression allocates at most the object itself.
+     */
     public static PlcObject create(Object value) {
-        return new PlcObject(new Scope(null), value);
+        if (value instanceof Boolean) {
+            return create(((Boolean) value).booleanValue());
+        } else if (value instanceof BigInteger && ((BigInteger) value).bitLength() < Long.SIZE) {
+            return create(((BigInteger) value).longValue());
+        }
+        return new PlcObject(value, 0, false);
     }
 
-    public static void registerType(Type type) {
-        if (_types.containsKey(type.getName())) {
-            throw new IllegalArgumentException("Duplicate registration of type " + type.getName() + ".");
+    public static PlcObject create(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    /**
+     * Creates an Integer object without boxing the value into a
+     * {@link BigInteger} until it is requested through {@link PlcObject#getValue()}.
+     */
+    public static PlcObject create(long value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return INTEGERS[(int) value - CACHE_LOW];
         }
-        _types.put(type.getName(), type);
+        return new PlcObject(null, value, true);
     }
 
     public static final class PlcObject {
 
-        private final Type _type;
-        private final Scope _scope;
-        private final Object _value;
+        // Created on first use for primitive values. Racing threads may each
+        // create one, but both are empty and only hold final fields.
+        private Type _type;
+        private Scope _scope;
+        private Object _value; // boxed lazily for objects created from a long
+        private final long _long;
+        private final boolean _isLong;
+        private final Shape _shape; // null unless this is a struct instance
+        private final PlcObject[] _fields;
 
         public PlcObject(Scope scope, Object value) {
             this(new Type("Unknown", "Unknown", scope), scope, value);
@@ -74,37 +106,130 @@ public final class Environment {
             _type = type;
             _scope = scope;
             _value = value;
+            _isLong = value instanceof BigInteger && ((BigInteger) value).bitLength() < Long.SIZE;
+            _long = _isLong ? ((BigInteger) value).longValue() : 0;
+            _shape = null;
+            _fields = null;
+        }
+
+        /**
+         * Creates an instance of a struct type, which keeps its fields in the
+         * given array in the slots of the type's {@link Shape}. The array is
+         * also the value, so instances are only equal to themselves.
+         */
+        public PlcObject(Type type, PlcObject[] fields) {
+            if (type.getShape() == null || fields.length != type.getShape().getSize()) {
+                throw new IllegalArgumentException("The fields do not match the shape of " + type.getName() + ".");
+            }
+            _type = type;
+            _scope = null;
+            _value = fields;
+            _long = 0;
+            _isLong = false;
+            _shape = type.getShape();
+            _fields = fields;
+        }
+
+        private PlcObject(Object value, long longValue, boolean isLong) {
+            _type = null;
+            _scope = null;
+            _value = value;
+            _long = longValue;
+            _isLong = isLong;
+            _shape = null;
+            _fields = null;
         }
 
         public Type getType() {
+            if (_type == null) {
+                _type = new Type("Unknown", "Unknown", getScope());
+            }
             return _type;
         }
 
+        private Scope getScope() {
+            if (_scope == null) {
+                _scope = new Scope(null);
+            }
+            return _scope;
+        }
+
+        /**
+         * Returns the variable of a field. For a struct instance, this is a
+         * copy of the field, which is only changed through a setField.
+         */
         public Variable getField(String name) {
-            return _scope.lookupVariable(name);
+            if (_shape != null) {
+                return new Variable(name, getField(slot(name)));
+            }
+            return getScope().lookupVariable(name);
         }
 
         public void setField(String name, PlcObject value) {
-            _scope.lookupVariable(name).setValue(value);
+            if (_shape != null) {
+                setField(slot(name), value);
+            } else {
+                getScope().lookupVariable(name).setValue(value);
+            }
+        }
+
+        /**
+         * Returns the layout of this struct instance, or null if it is not one.
+         */
+        public Shape getShape() {
+            return _shape;
+        }
+
+        public PlcObject getField(int slot) {
+            return _fields[slot];
+        }
+
+        public void setField(int slot, PlcObject value) {
+            _fields[slot] = value;
         }
 
+        private int slot(String name) {
+            int slot = _shape.getSlot(name);
+            if (slot < 0) {
+                throw new RuntimeException("The variable " + name + " is not defined in this scope.");
+            }
+            return slot;
+        }
+
+        /**
+         * Calls a method of this object's type, passing this object before
+         * the arguments through a view of the list rather than a copy.
+         */
         public PlcObject callMethod(String name, List<PlcObject> arguments) {
-            Function function = _type.getMethod(name, arguments.size());
-            arguments = new ArrayList<>(arguments);
-            arguments.add(0, this);
-            return function.invoke(arguments);
+            Function function = getType().getMethod(name, arguments.size());
+            return function.invoke(new ReceiverArguments(this, arguments));
         }
 
         public Object getValue() {
+            if (_value == null && _isLong) {
+                _value = BigInteger.valueOf(_long);
+            }
             return _value;
         }
 
+        /**
+         * Returns true if the value is an Integer which fits in a long, in
+         * which case {@link #getLong()} returns it without boxing.
+         */
+        public boolean isLong() {
+            return _isLong;
+        }
+
+        public long getLong() {
+            return _long;
+        }
+
         @Override
         public String toString() {
             return "Object{" +
-                    "type=" + _type +
-                    ", value=" + _value +
-                    ", scope=" + _scope +
+                    "type=" + getType() +
+                    ", value=" + getValue() +
+                    ", scope=" + getScope() +
                     '}';
         }
 
@@ -234,26 +359,96 @@ public final class Environment {
 
     }
 
+    /**
+     * A type of the language. The built-in types and those created by a
+     * {@link TypeRegistry} form a lattice: each has an id, and the set of
+     * the ids of its supertypes, itself included, so {@link #isSubtypeOf(Type)}
+     * is a single bit test. Types constructed directly are outside of the
+     * lattice and are only related to {@link #ANY} and types of their name.
+     * Every registry numbers its types from {@link #BUILTINS}, so types of
+     * different registries are related like those outside of the lattice.
+     */
     public static final class Type {
 
-        public static final Type ANY = new Type("Any", "Object", new Scope(null));
-        public static final Type NIL = new Type("Nil", "void", new Scope(ANY.getScope()));
-        public static final Type INTEGER_ITERABLE = new Type("IntegerIterable", "Iterable<Integer>", new Scope(ANY.getScope()));
-        public static final Type COMPARABLE = new Type("Comparable", "Comparable", new Scope(ANY.getScope()));
-        public static final Type BOOLEAN = new Type("Boolean", "Boolean", new Scope(ANY.getScope()));
-        public static final Type INTEGER = new Type("Integer", "Integer", new Scope(COMPARABLE.getScope()));
-        public static final Type DECIMAL = new Type("Decimal", "Double", new Scope(COMPARABLE.getScope()));
-        public static final Type CHARACTER = new Type("Character", "Character", new Scope(COMPARABLE.getScope()));
-        public static final Type STRING = new Type("String", "String", new Scope(COMPARABLE.getScope()));
+        /**
+         * The number of built-in types, whose ids come first in the lattice.
+         */
+        static final int BUILTINS = 9;
+
+        private static final BitSet OUTSIDE = new BitSet();
+
+        public static final Type ANY = new Type("Any", "Object", new Scope(null), 0);
+        public static final Type NIL = new Type("Nil", "void", new Scope(ANY.getScope()), 1, ANY);
+        public static final Type INTEGER_ITERABLE = new Type("IntegerIterable", "Iterable<Integer>", new Scope(ANY.getScope()), 2, ANY);
+        public static final Type COMPARABLE = new Type("Comparable", "Comparable", new Scope(ANY.getScope()), 3, ANY);
+        public static final Type BOOLEAN = new Type("Boolean", "Boolean", new Scope(ANY.getScope()), 4, ANY);
+        public static final Type INTEGER = new Type("Integer", "Integer", new Scope(COMPARABLE.getScope()), 5, COMPARABLE);
+        public static final Type DECIMAL = new Type("Decimal", "Double", new Scope(COMPARABLE.getScope()), 6, COMPARABLE);
+        public static final Type CHARACTER = new Type("Character", "Character", new Scope(COMPARABLE.getScope()), 7, COMPARABLE);
+        public static final Type STRING = new Type("String", "String", new Scope(COMPARABLE.getScope()), 8, COMPARABLE);
 
         private final String _name;
         private final String _jvmName;
         private final Scope _scope;
+        private final int _id; // -1 outside of the lattice
+        private final TypeRegistry _registry; // null for the built-in types and those outside of the lattice
+        private final BitSet _supertypes;
+        private final Shape _shape; // null unless this is a struct type
+        private DispatchTable _table = null; // replaced whole, so racing threads see a complete one
 
         public Type(String name, String jvmName, Scope scope) {
+            this(name, jvmName, scope, null);
+        }
+
+        /**
+         * Creates a struct type outside of the lattice, whose instances have
+         * the given field layout and the methods defined in its scope.
+         */
+        public Type(String name, String jvmName, Scope scope, Shape shape) {
+            _name = name;
+            _jvmName = jvmName;
+            _scope = scope;
+            _id = -1;
+            _registry = null;
+            _supertypes = OUTSIDE;
+            _shape = shape;
+        }
+
+        Type(String name, String jvmName, Scope scope, int id, Type... supertypes) {
+            this(name, jvmName, scope, null, id, null, supertypes);
+        }
+
+        /**
+         * Creates the type with the given id in the lattice of a registry,
+         * below the given supertypes and, transitively, theirs.
+         */
+        Type(String name, String jvmName, Scope scope, TypeRegistry registry, int id, Shape shape, Type... supertypes) {
             _name = name;
             _jvmName = jvmName;
             _scope = scope;
+            _registry = registry;
+            _id = id;
+            _shape = shape;
+            _supertypes = new BitSet(id + 1);
+            _supertypes.set(id);
+            for (Type supertype : supertypes) {
+                _supertypes.or(supertype._supertypes);
+            }
+        }
+
+        public int getId() {
+            return _id;
+        }
+
+        /**
+         * Returns whether a value of this type may be used where one of the
+         * given type is expected.
+         */
+        public boolean isSubtypeOf(Type type) {
+            if (_id < 0 || type._id < 0 || (_registry != type._registry && _registry != null && type._registry != null)) {
+                return type == ANY || _name.equals(type._name);
+            }
+            return _supertypes.get(type._id);
         }
 
         public String getName() {
@@ -268,12 +463,36 @@ public final class Environment {
             return _scope;
         }
 
+        /**
+         * Returns the field layout of a struct type, or null for any other.
+         */
+        public Shape getShape() {
+            return _shape;
+        }
+
         public Variable getField(String name) {
             return _scope.lookupVariable(name);
         }
 
+        /**
+         * Returns a method of this type from its dispatch table, which holds
+         * the functions of its scope and all its parents. The table is built
+         * on first use and again once a function has been defined anywhere in
+         * its scope's chain, so methods added to a scope later are still
+         * found while definitions in unrelated scopes leave the table alone.
+         */
         public Function getMethod(String name, int arity) {
-            return _scope.lookupFunction(name, arity);
+            DispatchTable table = _table;
+            int generation = _scope.getGeneration();
+            if (table == null || table._generation != generation) {
+                table = new DispatchTable(generation, _scope.flattenFunctions());
+                _table = table;
+            }
+            Function[] functions = table._methods.get(name);
+            if (functions == null || arity >= functions.length || functions[arity] == null) {
+                throw new RuntimeException("The function " + name + "/" + arity + " is not defined in this scope.");
+            }
+            return functions[arity];
         }
 
         @Override
@@ -285,6 +504,48 @@ public final class Environment {
                     '}';
         }
 
+        /**
+         * The methods of a type with those it inherits flattened in, as of
+         * the given generation of its scope's chain.
+         */
+        private static final class DispatchTable {
+
+            private final int _generation;
+            private final Map<String, Function[]> _methods;
+
+            private DispatchTable(int generation, Map<String, Function[]> methods) {
+                _generation = generation;
+                _methods = methods;
+            }
+
+        }
+
+    }
+
+    /**
+     * The arguments of a method call preceded by its receiver, read through
+     * to the original list.
+     */
+    private static final class ReceiverArguments extends AbstractList<PlcObject> implements RandomAccess {
+
+        private final PlcObject _receiver;
+        private final List<PlcObject> _arguments;
+
+        private ReceiverArguments(PlcObject receiver, List<PlcObject> arguments) {
+            _receiver = receiver;
+            _arguments = arguments;
+        }
+
+        @Override
+        public PlcObject get(int index) {
+            return index == 0 ? _receiver : _arguments.get(index - 1);
+        }
+
+        @Override
+        public int size() {
+            return _arguments.size() + 1;
+        }
+
     }
 
 }
@@ -6,10 +6,16 @@ import java.util.List;
 public final class Generator implements Ast.Visitor<Void> {
 
     private final PrintWriter _writer;
+    private final TypeRegistry _types;
     private int _indent = 0;
 
     public Generator(PrintWriter writer) {
+        this(writer, new TypeRegistry());
+    }
+
+    public Generator(PrintWriter writer, TypeRegistry types) {
         _writer = writer;
+        _types = types;
     }
 
     private void print(Object... objects) {
@@ -105,7 +111,7 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Field ast) {
-        _writer.write(Environment.getType(ast.getTypeName()).getJvmName());
+        _writer.write(_types.getType(ast.getTypeName()).getJvmName());
         _writer.write(" ");
         _writer.write(ast.getName());
 
@@ -127,7 +133,7 @@ public final class Generator implements Ast.Visitor<Void> {
         _writer.write("(");
 
         for (int i = 0; i < ast.getParameters().size(); ++i) {
-            _writer.write(Environment.getType(ast.getParameterTypeNames().get(i)).getJvmName());
+            _writer.write(_types.getType(ast.getParameterTypeNames().get(i)).getJvmName());
             _writer.write(" ");
             _writer.write(ast.getParameters().get(i));
             if (i < ast.getParameters().size() - 1) {
@@ -173,7 +179,7 @@ public final class Generator implements Ast.Visitor<Void> {
         indent();
         String type;
         if (ast.getTypeName().isPresent()) {
-            type = Environment.getType(ast.getTypeName().get()).getJvmName();
+            type = _types.getType(ast.getTypeName().get()).getJvmName();
         } else {
             type = ast.getVariable().getType().getJvmName();
         }
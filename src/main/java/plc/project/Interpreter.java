@@ -4,13 +4,21 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.function.Function;
 
 public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     private Scope _scope;
+    private Frame _frame = null; // locals of the resolved method being executed
+    private Environment.PlcObject _returned = null; // set by RETURN until the method completes
+    private Environment.PlcObject _self = null; // the struct instance whose method is being executed
+    private final Map<String, Struct> _structs = new HashMap<>();
 
     public Interpreter(Scope parent) {
         _scope = new Scope(parent);
@@ -31,6 +39,11 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     @Override
     public Environment.PlcObject visit(Ast.Source ast) {
+        if (ast.getStructs() != null) {
+            for (Ast.Struct struct : ast.getStructs()) {
+                visit(struct);
+            }
+        }
 
         for (Ast.Field field : ast.getFields()) {
             if (field.getValue().isPresent()) {
@@ -47,9 +60,30 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
         return _scope.lookupFunction("main", 0).invoke(new ArrayList<>());
     }
 
+    /**
+     * Defines a struct type, whose instances are created by declarations of
+     * that type without a value. Its methods receive the instance as their
+     * first argument, and may use its fields and other methods unqualified.
+     */
     @Override
     public Environment.PlcObject visit(Ast.Struct ast) {
-        return null;
+        if (_structs.containsKey(ast.getName())) {
+            throw new RuntimeException("The struct " + ast.getName() + " is already defined.");
+        } else if (ast.getShape().getSize() != ast.getFields().size()) {
+            for (int i = 0; i < ast.getFields().size(); i++) {
+                if (ast.getShape().getSlot(ast.getFields().get(i).getName()) != i) {
+                    throw new RuntimeException("The variable " + ast.getFields().get(i).getName() + " is already defined in this scope.");
+                }
+            }
+        }
+
+        Scope methods = new Scope(null);
+        Environment.Type type = new Environment.Type(ast.getName(), ast.getName(), methods, ast.getShape());
+        for (Ast.Method method : ast.getMethods()) {
+            methods.defineFunction(method.getName(), method.getParameters().size(), function(method, true));
+        }
+        _structs.put(ast.getName(), new Struct(ast, type));
+        return Environment.NIL;
     }
 
     @Override
@@ -65,34 +99,62 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     @Override
     public Environment.PlcObject visit(Ast.Method ast) {
-        Function<List<Environment.PlcObject>, Environment.PlcObject> func = (args) -> {
-            Scope prev = _scope;
-            Scope top = _scope;
-            while (top.getParent().getParent() != null) {
-                top = top.getParent();
+        if (ast.getStructs() != null) {
+            for (Ast.Struct struct : ast.getStructs()) {
+                visit(struct);
             }
-            _scope = new Scope(top);
+        }
+        _scope.defineFunction(ast.getName(), ast.getParameters().size(), function(ast, false));
+        return Environment.NIL;
+    }
+
+    /**
+     * Returns the function executing a method, which for a struct method
+     * takes the instance as an extra first argument.
+     */
+    private Function<List<Environment.PlcObject>, Environment.PlcObject> function(Ast.Method ast, boolean member) {
+        new Resolver().visit(ast);
+
+        Scope globals = globals(_scope); // found once here rather than on every call
+        int offset = member ? 1 : 0;
+
+        return (args) -> {
+            Scope prev = _scope;
+            Frame prevFrame = _frame;
+            Environment.PlcObject prevSelf = _self;
             Environment.PlcObject ret = Environment.NIL;
 
+            _self = member ? args.get(0) : null;
             List<String> params = ast.getParameters();
-            for (int i = 0; i < params.size(); i++) {
-                _scope.defineVariable(params.get(i), args.get(i));
+            if (ast.getFrameSize() >= 0) {
+                // locals live in frames, anything left in scopes is global
+                _scope = globals;
+                _frame = new Frame(null, ast.getFrameSize());
+                for (int i = 0; i < params.size(); i++) {
+                    _frame._slots[i] = args.get(i + offset);
+                }
+            } else {
+                _scope = new Scope(globals);
+                _frame = null;
+                for (int i = 0; i < params.size(); i++) {
+                    _scope.defineVariable(params.get(i), args.get(i + offset));
+                }
             }
 
             try {
-                for (Ast.Stmt stmt : ast.getStatements()) {
-                    visit(stmt);
+                execute(ast.getStatements());
+                if (_returned != null) {
+                    ret = _returned;
                 }
-            } catch (Return e) {
-                ret = e._value;
+            } finally {
+                _returned = null;
+                _scope = prev;
+                _frame = prevFrame;
+                _self = prevSelf;
             }
 
-            _scope = prev;
             return ret;
         };
-
-        _scope.defineFunction(ast.getName(), ast.getParameters().size(), func);
-        return Environment.NIL;
     }
 
     @Override
@@ -104,10 +166,11 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     @Override
     public Environment.PlcObject visit(Ast.Stmt.Declaration ast) {
-        if (ast.getValue().isPresent()) {
-            _scope.defineVariable(ast.getName(), visit(ast.getValue().get()));
+        Environment.PlcObject value = ast.getValue().isPresent() ? visit(ast.getValue().get()) : instantiate(ast.getTypeName());
+        if (_frame != null) {
+            _frame._slots[ast.getSlot()] = value;
         } else {
-            _scope.defineVariable(ast.getName(), Environment.NIL);
+            _scope.defineVariable(ast.getName(), value);
         }
 
         return Environment.NIL;
@@ -122,7 +185,17 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
         Environment.PlcObject value = visit(ast.getValue());
         Ast.Expr.Access lhs = (Ast.Expr.Access) ast.getReceiver();
         if (lhs.getReceiver().isPresent()) {
-            visit(lhs.getReceiver().get()).setField(lhs.getName(), value);
+            Environment.PlcObject receiver = visit(lhs.getReceiver().get());
+            int field = field(receiver, lhs);
+            if (field >= 0) {
+                receiver.setField(field, value);
+            } else {
+                receiver.setField(lhs.getName(), value);
+            }
+        } else if (_frame != null && lhs.isResolved()) {
+            _frame.set(lhs.getDepth(), lhs.getSlot(), value);
+        } else if (isField(lhs)) {
+            _self.setField(lhs.getField(), value);
         } else {
             _scope.lookupVariable(lhs.getName()).setValue(value);
         }
@@ -132,17 +205,28 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     @Override
     public Environment.PlcObject visit(Ast.Stmt.If ast) {
+        if (ast.getFrameSize() == 0) {
+            // neither branch declares variables, so both run in this block
+            execute(requireType(Boolean.class, visit(ast.getCondition())) ? ast.getThenStatements() : ast.getElseStatements());
+            return Environment.NIL;
+        } else if (_frame != null) {
+            boolean condition = requireType(Boolean.class, visit(ast.getCondition()));
+            try {
+                _frame = new Frame(_frame, ast.getFrameSize());
+                execute(condition ? ast.getThenStatements() : ast.getElseStatements());
+            } finally {
+                _frame = _frame._parent;
+            }
+            return Environment.NIL;
+        }
+
         try {
             _scope = new Scope(_scope);
 
             if (requireType(Boolean.class, visit(ast.getCondition()))) {
-                for (Ast.Stmt stmt : ast.getThenStatements()) {
-                    visit(stmt);
-                }
+                execute(ast.getThenStatements());
             } else {
-                for (Ast.Stmt stmt : ast.getElseStatements()) {
-                    visit(stmt);
-                }
+                execute(ast.getElseStatements());
             }
         } finally {
             _scope = _scope.getParent();
@@ -154,16 +238,35 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     @Override
     public Environment.PlcObject visit(Ast.Stmt.For ast) {
         Iterable<Environment.PlcObject> list = requireType(Iterable.class, visit(ast.getValue()));
+        if (_frame != null) {
+            // one frame serves every iteration, reset at the start of each
+            Frame frame = new Frame(_frame, ast.getFrameSize());
+            for (Environment.PlcObject o : list) {
+                try {
+                    _frame = frame.reset();
+                    _frame._slots[0] = o;
+                    execute(ast.getStatements());
+                } finally {
+                    _frame = frame._parent;
+                }
+                if (_returned != null) {
+                    break;
+                }
+            }
+            return Environment.NIL;
+        }
+
         for (Environment.PlcObject o : list) {
             try {
                 _scope = new Scope(_scope);
                 _scope.defineVariable(ast.getName(), o);
-                for (Ast.Stmt statement : ast.getStatements()) {
-                    visit(statement);
-                }
+                execute(ast.getStatements());
             } finally {
                 _scope = _scope.getParent();
             }
+            if (_returned != null) {
+                break;
+            }
         }
 
         return Environment.NIL;
@@ -171,12 +274,29 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     @Override
     public Environment.PlcObject visit(Ast.Stmt.While ast) {
-        while (requireType(Boolean.class, visit(ast.getCondition()))) {
+        if (ast.getFrameSize() == 0) {
+            // the body declares no variables, so it runs in this block
+            while (_returned == null && requireType(Boolean.class, visit(ast.getCondition()))) {
+                execute(ast.getStatements());
+            }
+            return Environment.NIL;
+        }
+
+        Frame frame = _frame != null ? new Frame(_frame, ast.getFrameSize()) : null;
+        while (_returned == null && requireType(Boolean.class, visit(ast.getCondition()))) {
+            if (frame != null) {
+                try {
+                    _frame = frame.reset();
+                    execute(ast.getStatements());
+                } finally {
+                    _frame = frame._parent;
+                }
+                continue;
+            }
+
             try {
                 _scope = new Scope(_scope);
-                for (Ast.Stmt stmt : ast.getStatements()) {
-                    visit(stmt);
-                }
+                execute(ast.getStatements());
             } finally {
                 _scope = _scope.getParent();
             }
@@ -187,7 +307,8 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     @Override
     public Environment.PlcObject visit(Ast.Stmt.Return ast) {
-        throw new Return(visit(ast.getValue()));
+        _returned = visit(ast.getValue());
+        return Environment.NIL;
     }
 
     @Override
@@ -204,7 +325,7 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     }
 
     @Override
-    public Environment.PlcObject visit(Ast.Expr.Binary ast) { // fixme: break in separate methods
+    public Environment.PlcObject visit(Ast.Expr.Binary ast) {
         Environment.PlcObject leftResult;
         Environment.PlcObject rightResult;
         String operator = ast.getOperator();
@@ -236,108 +357,230 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
                     return Environment.create(false);
                 }
             }
-            case "<", "<=", ">", ">=" -> {
-                leftResult = visit(ast.getLeft());
-                rightResult = visit(ast.getRight());
+            default -> {
+                return evaluate(operator, visit(ast.getLeft()), visit(ast.getRight()));
+            }
+        }
+    }
 
-                Comparable<Object> lhs = (Comparable<Object>) leftResult.getValue();
-                Comparable<Object> rhs = (Comparable<Object>) requireType(lhs.getClass(), rightResult);
+    /**
+     * Returns the value of a variable declared without one: a new instance
+     * if its type is a struct, or else NIL. The fields are initialized in
+     * order, as in a method of the instance, so they may use earlier ones.
+     */
+    private Environment.PlcObject instantiate(Optional<String> typeName) {
+        Struct struct = typeName.isPresent() ? _structs.get(typeName.get()) : null;
+        if (struct == null) {
+            return Environment.NIL;
+        }
 
-                int result = lhs.compareTo(rhs);
-                if (result < 0 && operator.equals("<")) {
-                    return Environment.create(true);
-                } else if (result <= 0 && operator.equals("<=")) {
-                    return Environment.create(true);
-                } else if (result > 0 && operator.equals(">")) {
-                    return Environment.create(true);
-                } else if (result >= 0 && operator.equals(">=")) {
-                    return Environment.create(true);
-                } else {
-                    return Environment.create(false);
+        List<Ast.Field> fields = struct._ast.getFields();
+        Environment.PlcObject[] values = new Environment.PlcObject[struct._type.getShape().getSize()];
+        Arrays.fill(values, Environment.NIL);
+        Environment.PlcObject instance = new Environment.PlcObject(struct._type, values);
+
+        Scope prev = _scope;
+        Frame prevFrame = _frame;
+        Environment.PlcObject prevSelf = _self;
+        try {
+            _scope = globals(_scope);
+            _frame = null;
+            _self = instance;
+            for (int i = 0; i < fields.size(); i++) {
+                if (fields.get(i).getValue().isPresent()) {
+                    values[i] = visit(fields.get(i).getValue().get());
                 }
             }
-            case "==", "!=" -> {
-                leftResult = visit(ast.getLeft());
-                rightResult = visit(ast.getRight());
-                boolean result = Objects.equals(leftResult.getValue(), rightResult.getValue());
-                if (operator.equals("!=")) {
-                    result = !result;
-                }
+        } finally {
+            _scope = prev;
+            _frame = prevFrame;
+            _self = prevSelf;
+        }
+        return instance;
+    }
 
-                return Environment.create(result);
-            }
-            case "+" -> {
-                leftResult = visit(ast.getLeft());
-                rightResult = visit(ast.getRight());
-                Object result;
-
-                if (leftResult.getValue().getClass().equals(String.class) || rightResult.getValue().getClass().equals(String.class)) {
-                    result = leftResult.getValue() + rightResult.getValue().toString();
-                } else if (leftResult.getValue().getClass().equals(BigInteger.class) && rightResult.getValue().getClass().equals(BigInteger.class)) {
-                    result = ((BigInteger) leftResult.getValue()).add((BigInteger) rightResult.getValue());
-                } else if (leftResult.getValue().getClass().equals(BigDecimal.class) && rightResult.getValue().getClass().equals(BigDecimal.class)) {
-                    result = ((BigDecimal) leftResult.getValue()).add((BigDecimal) rightResult.getValue());
-                } else {
-                    requireType(leftResult.getValue().getClass(), rightResult);
-                    throw new RuntimeException("Incompatible types for arithmetic operator");
-                }
+    /**
+     * Returns the slot of the field an access reads from an object, or -1
+     * if it is not a struct instance with that field. The slot is cached on
+     * the access by shape, so it is looked up once per layout it meets.
+     */
+    private static int field(Environment.PlcObject object, Ast.Expr.Access ast) {
+        Shape shape = object.getShape();
+        if (shape == null) {
+            return -1;
+        } else if (ast.getShape() != shape) {
+            ast.setField(shape, shape.getSlot(ast.getName()));
+        }
+        return ast.getField();
+    }
 
-                return Environment.create(result);
+    /**
+     * Returns true if an unqualified access which is not bound to a frame
+     * names a field of the instance whose method is being executed, rather
+     * than a local of a method left to scopes or a global.
+     */
+    private boolean isField(Ast.Expr.Access ast) {
+        if (_self == null || field(_self, ast) < 0) {
+            return false;
+        }
+        for (Scope scope = _scope; _frame == null && scope.getParent() != null && scope.getParent().getParent() != null; scope = scope.getParent()) {
+            if (scope.definesVariable(ast.getName())) {
+                return false;
             }
-            case "-", "*" -> {
-                leftResult = visit(ast.getLeft());
-                rightResult = visit(ast.getRight());
-                Object result;
-
-                if (leftResult.getValue().getClass().equals(BigInteger.class) && rightResult.getValue().getClass().equals(BigInteger.class)) {
-                    if (operator.equals("-")) {
-                        result = ((BigInteger) leftResult.getValue()).subtract((BigInteger) rightResult.getValue());
-                    } else {
-                        result = ((BigInteger) leftResult.getValue()).multiply((BigInteger) rightResult.getValue());
-                    }
-                } else if (leftResult.getValue().getClass().equals(BigDecimal.class) && rightResult.getValue().getClass().equals(BigDecimal.class)) {
-                    if (operator.equals("-")) {
-                        result = ((BigDecimal) leftResult.getValue()).subtract((BigDecimal) rightResult.getValue());
-                    } else {
-                        result = ((BigDecimal) leftResult.getValue()).multiply((BigDecimal) rightResult.getValue());
-                    }
-                } else {
-                    requireType(leftResult.getValue().getClass(), rightResult);
-                    throw new RuntimeException("Incompatible types for arithmetic operator");
-                }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the scope of the program's fields and methods, the one just
+     * below the root of the given scope's chain.
+     */
+    private static Scope globals(Scope scope) {
+        while (scope.getParent() != null && scope.getParent().getParent() != null) {
+            scope = scope.getParent();
+        }
+        return scope;
+    }
 
-                return Environment.create(result);
+    /**
+     * Executes statements in order, stopping early once a RETURN has been
+     * executed so its value propagates to the enclosing method.
+     */
+    private void execute(List<Ast.Stmt> statements) {
+        for (Ast.Stmt stmt : statements) {
+            visit(stmt);
+            if (_returned != null) {
+                return;
             }
-            default -> { // divide
-                leftResult = visit(ast.getLeft());
-                rightResult = visit(ast.getRight());
-                Object result;
+        }
+    }
 
-                if (leftResult.getValue().getClass().equals(BigInteger.class) && rightResult.getValue().getClass().equals(BigInteger.class)) {
-                    if (rightResult.getValue().equals(BigInteger.ZERO)) {
-                        throw new RuntimeException("Division by zero.");
-                    }
-                    result = ((BigInteger) leftResult.getValue()).divide((BigInteger) rightResult.getValue());
-                } else if (leftResult.getValue().getClass().equals(BigDecimal.class) && rightResult.getValue().getClass().equals(BigDecimal.class)) {
-                    if (rightResult.getValue().equals(BigDecimal.ZERO)) {
-                        throw new RuntimeException("Division by zero.");
-                    }
-                    result = ((BigDecimal) leftResult.getValue()).divide((BigDecimal) rightResult.getValue(), RoundingMode.HALF_EVEN);
-                } else {
-                    requireType(leftResult.getValue().getClass(), rightResult);
-                    throw new RuntimeException("Incompatible types for arithmetic operator");
-                }
+    /**
+     * Evaluates a non short-circuiting binary operator on its operands.
+     */
+    static Environment.PlcObject evaluate(String operator, Environment.PlcObject left, Environment.PlcObject right) {
+        return switch (operator) {
+            case "<", "<=", ">", ">=" -> compare(operator, left, right);
+            case "==" -> Environment.create(equal(left, right));
+            case "!=" -> Environment.create(!equal(left, right));
+            case "+" -> add(left, right);
+            case "-" -> subtract(left, right);
+            case "*" -> multiply(left, right);
+            default -> divide(left, right);
+        };
+    }
+
+    static Environment.PlcObject compare(String operator, Environment.PlcObject left, Environment.PlcObject right) {
+        if (left.isLong() && right.isLong()) {
+            return Environment.create(compare(operator, Long.compare(left.getLong(), right.getLong())));
+        }
+
+        Comparable<Object> lhs = (Comparable<Object>) left.getValue();
+        Comparable<Object> rhs = (Comparable<Object>) requireType(lhs.getClass(), right);
+        return Environment.create(compare(operator, lhs.compareTo(rhs)));
+    }
+
+    static boolean equal(Environment.PlcObject left, Environment.PlcObject right) {
+        if (left.isLong() && right.isLong()) {
+            return left.getLong() == right.getLong();
+        }
+        return Objects.equals(left.getValue(), right.getValue());
+    }
+
+    static Environment.PlcObject add(Environment.PlcObject left, Environment.PlcObject right) {
+        Environment.PlcObject small = arithmetic("+", left, right);
+        if (small != null) {
+            return small;
+        }
 
-                return Environment.create(result);
+        Object result;
+        if (left.getValue().getClass().equals(String.class) || right.getValue().getClass().equals(String.class)) {
+            result = left.getValue() + right.getValue().toString();
+        } else if (left.getValue().getClass().equals(BigInteger.class) && right.getValue().getClass().equals(BigInteger.class)) {
+            result = ((BigInteger) left.getValue()).add((BigInteger) right.getValue());
+        } else if (left.getValue().getClass().equals(BigDecimal.class) && right.getValue().getClass().equals(BigDecimal.class)) {
+            result = ((BigDecimal) left.getValue()).add((BigDecimal) right.getValue());
+        } else {
+            requireType(left.getValue().getClass(), right);
+            throw new RuntimeException("Incompatible types for arithmetic operator");
+        }
+
+        return Environment.create(result);
+    }
+
+    static Environment.PlcObject subtract(Environment.PlcObject left, Environment.PlcObject right) {
+        Environment.PlcObject small = arithmetic("-", left, right);
+        if (small != null) {
+            return small;
+        }
+
+        Object result;
+        if (left.getValue().getClass().equals(BigInteger.class) && right.getValue().getClass().equals(BigInteger.class)) {
+            result = ((BigInteger) left.getValue()).subtract((BigInteger) right.getValue());
+        } else if (left.getValue().getClass().equals(BigDecimal.class) && right.getValue().getClass().equals(BigDecimal.class)) {
+            result = ((BigDecimal) left.getValue()).subtract((BigDecimal) right.getValue());
+        } else {
+            requireType(left.getValue().getClass(), right);
+            throw new RuntimeException("Incompatible types for arithmetic operator");
+        }
+
+        return Environment.create(result);
+    }
+
+    static Environment.PlcObject multiply(Environment.PlcObject left, Environment.PlcObject right) {
+        Environment.PlcObject small = arithmetic("*", left, right);
+        if (small != null) {
+            return small;
+        }
+
+        Object result;
+        if (left.getValue().getClass().equals(BigInteger.class) && right.getValue().getClass().equals(BigInteger.class)) {
+            result = ((BigInteger) left.getValue()).multiply((BigInteger) right.getValue());
+        } else if (left.getValue().getClass().equals(BigDecimal.class) && right.getValue().getClass().equals(BigDecimal.class)) {
+            result = ((BigDecimal) left.getValue()).multiply((BigDecimal) right.getValue());
+        } else {
+            requireType(left.getValue().getClass(), right);
+            throw new RuntimeException("Incompatible types for arithmetic operator");
+        }
+
+        return Environment.create(result);
+    }
+
+    static Environment.PlcObject divide(Environment.PlcObject left, Environment.PlcObject right) {
+        Environment.PlcObject small = arithmetic("/", left, right);
+        if (small != null) {
+            return small;
+        }
+
+        Object result;
+        if (left.getValue().getClass().equals(BigInteger.class) && right.getValue().getClass().equals(BigInteger.class)) {
+            if (right.getValue().equals(BigInteger.ZERO)) {
+                throw new RuntimeException("Division by zero.");
+            }
+            result = ((BigInteger) left.getValue()).divide((BigInteger) right.getValue());
+        } else if (left.getValue().getClass().equals(BigDecimal.class) && right.getValue().getClass().equals(BigDecimal.class)) {
+            if (right.getValue().equals(BigDecimal.ZERO)) {
+                throw new RuntimeException("Division by zero.");
             }
+            result = ((BigDecimal) left.getValue()).divide((BigDecimal) right.getValue(), RoundingMode.HALF_EVEN);
+        } else {
+            requireType(left.getValue().getClass(), right);
+            throw new RuntimeException("Incompatible types for arithmetic operator");
         }
+
+        return Environment.create(result);
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Expr.Access ast) {
         if (ast.getReceiver().isPresent()) {
             Environment.PlcObject receiver = visit(ast.getReceiver().get());
-            return receiver.getField(ast.getName()).getValue();
+            int field = field(receiver, ast);
+            return field >= 0 ? receiver.getField(field) : receiver.getField(ast.getName()).getValue();
+        } else if (_frame != null && ast.isResolved()) {
+            return _frame.get(ast.getDepth(), ast.getSlot());
+        } else if (isField(ast)) {
+            return _self.getField(ast.getField());
         } else {
             return _scope.lookupVariable(ast.getName()).getValue();
         }
@@ -345,7 +588,7 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     @Override
     public Environment.PlcObject visit(Ast.Expr.Function ast) {
-        List<Environment.PlcObject> arguments = new ArrayList<>();
+        List<Environment.PlcObject> arguments = new ArrayList<>(ast.getArguments().size());
         for (Ast.Expr a : ast.getArguments()) {
             arguments.add(visit(a));
         }
@@ -353,15 +596,68 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
         if (ast.getReceiver().isPresent()) {
             Environment.PlcObject receiver = visit(ast.getReceiver().get());
             return receiver.callMethod(ast.getName(), arguments);
+        } else if (_self != null && _self.getType().getScope().definesFunction(ast.getName(), arguments.size())) {
+            return _self.callMethod(ast.getName(), arguments);
         } else {
-            return _scope.lookupFunction(ast.getName(), ast.getArguments().size()).invoke(arguments);
+            Scope.CallSite cached = ast.getCallSite();
+            Scope.CallSite site = _scope.lookupFunction(ast.getName(), arguments.size(), cached);
+            if (site != cached) {
+                ast.setCallSite(site);
+            }
+            return site.getFunction().invoke(arguments);
+        }
+    }
+
+    /**
+     * Evaluates a comparison operator from the result of a compareTo.
+     */
+    private static boolean compare(String operator, int result) {
+        return switch (operator) {
+            case "<" -> result < 0;
+            case "<=" -> result <= 0;
+            case ">" -> result > 0;
+            default -> result >= 0;
+        };
+    }
+
+    /**
+     * Evaluates an arithmetic operator on two Integers which fit in a long,
+     * returning null if either operand does not or if the result would
+     * overflow (or divides by zero), so the caller falls back to BigInteger.
+     */
+    private static Environment.PlcObject arithmetic(String operator, Environment.PlcObject left, Environment.PlcObject right) {
+        if (!left.isLong() || !right.isLong()) {
+            return null;
+        }
+        long lhs = left.getLong();
+        long rhs = right.getLong();
+        switch (operator) {
+            case "+" -> {
+                long result = lhs + rhs;
+                return ((lhs ^ result) & (rhs ^ result)) < 0 ? null : Environment.create(result);
+            }
+            case "-" -> {
+                long result = lhs - rhs;
+                return ((lhs ^ rhs) & (lhs ^ result)) < 0 ? null : Environment.create(result);
+            }
+            case "*" -> {
+                long high = Math.multiplyHigh(lhs, rhs);
+                long result = lhs * rhs;
+                return high != (result >> 63) ? null : Environment.create(result);
+            }
+            default -> {
+                if (rhs == 0 || (lhs == Long.MIN_VALUE && rhs == -1)) {
+                    return null;
+                }
+                return Environment.create(lhs / rhs);
+            }
         }
     }
 
     /**
      * Helper function to ensure an object is of the appropriate type.
      */
-    private static <T> T requireType(Class<T> type, Environment.PlcObject object) {
+    static <T> T requireType(Class<T> type, Environment.PlcObject object) {
         if (type.isInstance(object.getValue())) {
             return type.cast(object.getValue());
         } else {
@@ -370,14 +666,56 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     }
 
     /**
-     * Exception class for returning values.
+     * A struct type defined by the program, with the fields its instances
+     * are initialized from.
      */
-    private static class Return extends RuntimeException {
+    private static final class Struct {
+
+        private final Ast.Struct _ast;
+        private final Environment.Type _type;
+
+        private Struct(Ast.Struct ast, Environment.Type type) {
+            _ast = ast;
+            _type = type;
+        }
 
-        private final Environment.PlcObject _value;
+    }
 
-        private Return(Environment.PlcObject value) {
-            _value = value;
+    /**
+     * An array-backed scope holding the locals bound by the {@link Resolver}.
+     */
+    private static final class Frame {
+
+        private final Frame _parent;
+        private final Environment.PlcObject[] _slots;
+
+        private Frame(Frame parent, int size) {
+            _parent = parent;
+            _slots = new Environment.PlcObject[size];
+        }
+
+        /**
+         * Clears the slots for another execution of the same block.
+         */
+        private Frame reset() {
+            Arrays.fill(_slots, null);
+            return this;
+        }
+
+        private Environment.PlcObject get(int depth, int slot) {
+            Frame frame = this;
+            for (int i = 0; i < depth; i++) {
+                frame = frame._parent;
+            }
+            return frame._slots[slot];
+        }
+
+        private void set(int depth, int slot, Environment.PlcObject value) {
+            Frame frame = this;
+            for (int i = 0; i < depth; i++) {
+                frame = frame._parent;
+            }
+            frame._slots[slot] = value;
         }
 
     }
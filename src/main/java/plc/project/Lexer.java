@@ -1,6 +1,5 @@
 package plc.project;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -42,10 +41,11 @@ public final class Lexer {
 
     /**
      * Repeatedly lexes the input using {@link #lexToken()}, also skipping over
-     * whitespace where appropriate.
+     * whitespace where appropriate. The tokens are kept in a
+     * {@link TokenBuffer} over the input rather than as objects.
      */
     public List<Token> lex() {
-        List<Token> tokens = new ArrayList<>();
+        TokenBuffer tokens = new TokenBuffer(_chars._input);
 
         while (_chars.has(0)) {
             if (peek(WHITESPACE)) {
@@ -53,7 +53,8 @@ public final class Lexer {
             } else if (peek(BANG, BANG, BANG)) {
                 lexComment();
             } else {
-                tokens.add(lexToken());
+                Token token = lexToken();
+                tokens.add(token.getType(), token.getIndex(), token.getIndex() + token.getLiteral().length());
             }
         }
 
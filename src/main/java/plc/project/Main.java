@@ -1,29 +1,92 @@
 package plc.project;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 public class Main {
     public static void main(String[] args) {
-        if (args.length == 0) {
+        List<String> sources = new ArrayList<>();
+        String lexer = "regex";
+        String parsing = "sequential";
+        String analysis = "sequential";
+        String backend = "source";
+        String output = null;
+        String executor = "platform";
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (String arg : args) {
+            if (arg.equals("--lexer=regex") || arg.equals("--lexer=dfa") || arg.equals("--lexer=parallel")
+                    || arg.equals("--lexer=stream")) {
+                lexer = arg.substring("--lexer=".length());
+            } else if (arg.equals("--parser=sequential") || arg.equals("--parser=parallel")) {
+                parsing = arg.substring("--parser=".length());
+            } else if (arg.equals("--analyzer=sequential") || arg.equals("--analyzer=parallel")) {
+                analysis = arg.substring("--analyzer=".length());
+            } else if (arg.equals("--backend=source") || arg.equals("--backend=bytecode")) {
+                backend = arg.substring("--backend=".length());
+            } else if (arg.startsWith("--out=")) {
+                output = arg.substring("--out=".length());
+            } else if (arg.equals("--executor=platform") || arg.equals("--executor=virtual")) {
+                executor = arg.substring("--executor=".length());
+            } else if (arg.matches("--threads=[1-9][0-9]*")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--")) {
+                System.err.println("Unknown option " + arg + ". Exiting...");
+                System.exit(1);
+            } else {
+                sources.add(arg);
+            }
+        }
+        if (sources.isEmpty()) {
             System.err.println("No source file. Exiting...");
             System.exit(1);
         }
+        if (output != null || sources.size() > 1 || BatchCompiler.isMultiple(sources.get(0))) {
+            batch(sources, lexer, parsing, analysis, backend, output == null ? "." : output, executor, threads);
+            return;
+        }
+
+        String source = sources.get(0);
         PrintWriter writer = null;
         try {
-            var lexer = new Lexer(Files.readString(Path.of(args[0]), StandardCharsets.UTF_8));
-            var tokens = lexer.lex();
-            var parser = new ParserCompiler(tokens);
-            var ast = parser.parseSource();
-            var analyzer = new Analyzer(null);
-            analyzer.visit(ast);
-            writer = new PrintWriter("Main.java");
-            var generator = new Generator(writer);
-            generator.visit(ast);
-        } catch (IOException e) {
+            ParserCompiler parser;
+            if (lexer.equals("stream")) {
+                var stream = DfaLexer.map(Path.of(source));
+                parser = new ParserCompiler(stream::lexToken);
+            } else {
+                var input = Files.readString(Path.of(source), StandardCharsets.UTF_8);
+                List<Token> tokens = lexer.equals("dfa") ? new DfaLexer(input).lex()
+                        : lexer.equals("parallel") ? new DfaLexer(input).lex(ForkJoinPool.commonPool())
+                        : new Lexer(input).lex();
+                parser = new ParserCompiler(tokens);
+            }
+            var ast = parsing.equals("parallel") ? parser.parseSource(ForkJoinPool.commonPool()) : parser.parseSource();
+            var types = new TypeRegistry();
+            var analyzer = new Analyzer(null, types);
+            if (analysis.equals("parallel")) {
+                analyzer.visit(ast, ForkJoinPool.commonPool());
+            } else {
+                analyzer.visit(ast);
+            }
+            if (backend.equals("bytecode")) {
+                try (OutputStream out = new FileOutputStream("Main.class")) {
+                    new BytecodeGenerator(out).visit(ast);
+                }
+            } else {
+                writer = new PrintWriter("Main.java");
+                var generator = new Generator(writer, types);
+                generator.visit(ast);
+            }
+        } catch (IOException | UncheckedIOException e) {
             System.err.println("Failed reading the source file or creating the out file.");
             System.exit(2);
         } finally {
@@ -31,4 +94,33 @@ public class Main {
                 writer.flush();
         }
     }
+
+    /**
+     * Compiles every source matched by the inputs concurrently, each into
+     * its own directory under {@code output}.
+     */
+    private static void batch(List<String> inputs, String lexer, String parsing, String analysis, String backend, String output, String executor, int threads) {
+        ExecutorService service = null;
+        try {
+            List<BatchCompiler.Source> sources = BatchCompiler.expand(inputs);
+            service = BatchCompiler.executor(executor, threads);
+            var report = new BatchCompiler(lexer, parsing, analysis, backend, Path.of(output)).compile(sources, service);
+            report.print(System.err);
+            if (!report.getDiagnostics().isEmpty()) {
+                System.exit(3);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage() + " Exiting...");
+            System.exit(1);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Failed reading the source files.");
+            System.exit(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(2);
+        } finally {
+            if (service != null)
+                service.shutdown();
+        }
+    }
 }
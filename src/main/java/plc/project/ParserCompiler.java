@@ -3,8 +3,13 @@ package plc.project;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
 
 /**
  * The parser takes the sequence of tokens emitted by the lexer and turns that
@@ -21,8 +26,35 @@ import java.util.Optional;
 public final class ParserCompiler {
 
     private final TokenStream _tokens;
+    private final TokenBuffer _buffer;
 
     public ParserCompiler(List<Token> tokens) {
+        if (tokens instanceof TokenBuffer) {
+            _buffer = (TokenBuffer) tokens;
+            _tokens = new TokenStream(_buffer, 0, _buffer.size());
+        } else {
+            Iterator<Token> iterator = tokens.iterator();
+            _buffer = null;
+            _tokens = new TokenStream(() -> iterator.hasNext() ? iterator.next() : null);
+        }
+    }
+
+    /**
+     * Creates a parser over the tokens of {@code buffer} from {@code start}
+     * up to {@code end}, used to parse a single top-level unit.
+     */
+    private ParserCompiler(TokenBuffer buffer, int start, int end) {
+        _buffer = null;
+        _tokens = new TokenStream(buffer, start, end);
+    }
+
+    /**
+     * Creates a parser pulling tokens on demand from {@code tokens}, which
+     * returns {@code null} once exhausted (such as {@link DfaLexer#lexToken()}).
+     * Only a window of {@link TokenStream#WINDOW} tokens is held at a time.
+     */
+    public ParserCompiler(Supplier<Token> tokens) {
+        _buffer = null;
         _tokens = new TokenStream(tokens);
     }
 
@@ -36,16 +68,16 @@ public final class ParserCompiler {
 
         boolean defStarted = false;
         while (_tokens.has(0)) {
-            if (peek("LET")) {
+            if (peek(Token.Kind.LET)) {
                 if (defStarted) {
                     throw new ParseException("Expected: `DEF`, received: `" + getMatchedLiteral() + "`.", getMatchedIndex());
                 }
 
                 fields.add(parseField());
-            } else if (peek("DEF", "TYPE")) { // DEF TYPE Set(t: String) DO ...
+            } else if (peek(Token.Kind.DEF, Token.Kind.TYPE)) { // DEF TYPE Set(t: String) DO ...
                 defStarted = true;
                 structs.add(parseStruct());
-            } else if (peek("DEF")) { // DEF name() ...
+            } else if (peek(Token.Kind.DEF)) { // DEF name() ...
                 defStarted = true;
                 methods.add(parseMethod());
             } else {
@@ -61,26 +93,144 @@ public final class ParserCompiler {
         return new Ast.Source(fields, methods, structs);
     }
 
+    /**
+     * Parses the {@code source} rule, parsing its top-level units concurrently
+     * on {@code pool}. The tokens are first scanned for the units: a field
+     * runs up to the next {@code LET} or {@code DEF}, and a method or struct
+     * up to the {@code END} closing its outermost {@code DO} or
+     * {@code DEF TYPE}. Each unit is then parsed on its own, and the results
+     * are assembled in source order.
+     * <p>
+     * The scan only looks at keywords, which can also appear as names, so
+     * its units are checked: if a unit fails to parse or does not end exactly
+     * at its boundary, or the units are out of order, the source is parsed
+     * sequentially instead. The result, or the error, is therefore always
+     * the one of {@link #parseSource()}.
+     * <p>
+     * Only a parser over a {@link TokenBuffer} which has not started parsing
+     * can be split; any other parses sequentially.
+     */
+    public Ast.Source parseSource(ForkJoinPool pool) throws ParseException {
+        if (_buffer == null || _tokens.index != 0 || pool.getParallelism() < 2) {
+            return parseSource();
+        }
+
+        List<Integer> bounds = scanUnits();
+        if (bounds == null) {
+            return parseSource();
+        }
+
+        List<ForkJoinTask<Ast>> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.size(); i++) {
+            int start = bounds.get(i);
+            int end = bounds.get(i + 1);
+            tasks.add(pool.submit(() -> new ParserCompiler(_buffer, start, end).parseUnit()));
+        }
+
+        List<Ast.Field> fields = new ArrayList<>();
+        List<Ast.Method> methods = new ArrayList<>();
+        List<Ast.Struct> structs = new ArrayList<>();
+        for (ForkJoinTask<Ast> task : tasks) {
+            Ast unit;
+            try {
+                unit = task.get();
+            } catch (ExecutionException e) {
+                unit = null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+
+            if (unit instanceof Ast.Field) {
+                fields.add((Ast.Field) unit);
+            } else if (unit instanceof Ast.Method) {
+                methods.add((Ast.Method) unit);
+            } else if (unit instanceof Ast.Struct) {
+                structs.add((Ast.Struct) unit);
+            } else {
+                return parseSource();
+            }
+        }
+
+        return new Ast.Source(fields, methods, structs);
+    }
+
+    /**
+     * Returns the token indices the top-level units start at, followed by the
+     * number of tokens, or null if the tokens do not split into fields
+     * followed by methods and structs.
+     */
+    private List<Integer> scanUnits() {
+        List<Integer> bounds = new ArrayList<>();
+        int size = _buffer.size();
+        boolean defStarted = false;
+        int i = 0;
+        while (i < size) {
+            bounds.add(i);
+            Token.Kind kind = _buffer.getKind(i);
+            if (kind == Token.Kind.LET && !defStarted) {
+                i++;
+                while (i < size && _buffer.getKind(i) != Token.Kind.LET && _buffer.getKind(i) != Token.Kind.DEF) {
+                    i++;
+                }
+            } else if (kind == Token.Kind.DEF) {
+                defStarted = true;
+                int depth = 0;
+                for (i++; i < size; i++) {
+                    Token.Kind next = _buffer.getKind(i);
+                    if (next == Token.Kind.DO || next == Token.Kind.TYPE && _buffer.getKind(i - 1) == Token.Kind.DEF) {
+                        depth++;
+                    } else if (next == Token.Kind.END && --depth <= 0) {
+                        break;
+                    }
+                }
+                if (i++ >= size) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        }
+        bounds.add(size);
+        return bounds;
+    }
+
+    /**
+     * Parses a single field, method or struct, returning null unless it
+     * spans all of the tokens.
+     */
+    private Ast parseUnit() throws ParseException {
+        Ast unit;
+        if (peek(Token.Kind.LET)) {
+            unit = parseField();
+        } else if (peek(Token.Kind.DEF, Token.Kind.TYPE)) {
+            unit = parseStruct();
+        } else {
+            unit = parseMethod();
+        }
+        return _tokens.has(0) ? null : unit;
+    }
+
     /**
      * Parses the {@code field} rule. This method should only be called if the
      * next tokens start a field, aka {@code LET}.
      */
     public Ast.Field parseField() throws ParseException {
-        match("LET");
+        match(Token.Kind.LET);
 
-        if (!match(Token.Type.IDENTIFIER)) {
+        if (!match(Token.Kind.IDENTIFIER)) {
             throw new ParseException("Expected: Identifier, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
 
         String name = getMatchedLiteral();
 
-        if (!match(":", Token.Type.IDENTIFIER)) {
+        if (!match(Token.Kind.COLON, Token.Kind.IDENTIFIER)) {
             throw new ParseException("Expected: Type declaration, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
         String type = getMatchedLiteral();
 
         Ast.Expr value = null;
-        if (match("=")) {
+        if (match(Token.Kind.ASSIGN)) {
             value = parseExpression();
         }
 
@@ -92,15 +242,15 @@ public final class ParserCompiler {
      * next tokens start a method, aka {@code DEF}.
      */
     public Ast.Method parseMethod() throws ParseException {
-        match("DEF");
+        match(Token.Kind.DEF);
 
-        if (!match(Token.Type.IDENTIFIER)) {
+        if (!match(Token.Kind.IDENTIFIER)) {
             throw new ParseException("Expected: Identifier, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
 
         String name = getMatchedLiteral();
 
-        if (!match("(")) {
+        if (!match(Token.Kind.LEFT_PAREN)) {
             throw new ParseException("Expected: `(`, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
 
@@ -108,32 +258,32 @@ public final class ParserCompiler {
         List<String> parametersTypes = new ArrayList<>();
         matchAndGetParameters(parameters, parametersTypes);
 
-        if (!match(")")) {
+        if (!match(Token.Kind.RIGHT_PAREN)) {
             throw new ParseException("Expected: `)`, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
 
         Optional<String> returnType = Optional.empty();
-        if (match(":")) {
-            if (!match(Token.Type.IDENTIFIER)) {
+        if (match(Token.Kind.COLON)) {
+            if (!match(Token.Kind.IDENTIFIER)) {
                 throw new ParseException("Expected: Type declaration, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
             }
             returnType = Optional.of(getMatchedLiteral());
         }
 
-        if (!match("DO")) {
+        if (!match(Token.Kind.DO)) {
             throw new ParseException("Expected: `DO`, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
 
         List<Ast.Stmt> statements = new ArrayList<>();
         List<Ast.Struct> structs = new ArrayList<>();
-        while (!peek("END")) {
-            if (peek("DEF", "TYPE"))
+        while (!peek(Token.Kind.END)) {
+            if (peek(Token.Kind.DEF, Token.Kind.TYPE))
                 structs.add(parseStruct());
             else
                 statements.add(parseStatement());
         }
 
-        if (!match("END")) {
+        if (!match(Token.Kind.END)) {
             throw new ParseException("Expected: `END`, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
 
@@ -145,24 +295,24 @@ public final class ParserCompiler {
      * next tokens start a struct/type, aka {@code DEF TYPE}.
      */
     public Ast.Struct parseStruct() throws ParseException {
-        match("DEF", "TYPE");
+        match(Token.Kind.DEF, Token.Kind.TYPE);
 
-        if (!match(Token.Type.IDENTIFIER)) {
+        if (!match(Token.Kind.IDENTIFIER)) {
             throw new ParseException("Expected: Identifier, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
 
         String name = getMatchedLiteral();
 
-        if (!match(":")) {
+        if (!match(Token.Kind.COLON)) {
             throw new ParseException("Expected: `:`, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
 
         List<Ast.Field> fields = new ArrayList<>();
         List<Ast.Method> methods = new ArrayList<>();
-        while (!peek("END")) {
-            if (peek("LET")) {
+        while (!peek(Token.Kind.END)) {
+            if (peek(Token.Kind.LET)) {
                 fields.add(parseField());
-            } else if (peek("DEF")) { // DEF name() ...
+            } else if (peek(Token.Kind.DEF)) { // DEF name() ...
                 methods.add(parseMethod());
             } else {
                 throw new ParseException("Expected: "
@@ -174,7 +324,7 @@ public final class ParserCompiler {
             }
         }
 
-        if (!match("END")) {
+        if (!match(Token.Kind.END)) {
             throw new ParseException("Expected: `END`, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
 
@@ -187,26 +337,30 @@ public final class ParserCompiler {
      * statement, then it is an expression/assignment statement.
      */
     public Ast.Stmt parseStatement() throws ParseException {
-        if (peek("LET")) {
-            return parseDeclarationStatement();
-        } else if (peek("IF")) {
-            return parseIfStatement();
-        } else if (peek("FOR")) {
-            return parseForStatement();
-        } else if (peek("WHILE")) {
-            return parseWhileStatement();
-        } else if (peek("RETURN")) {
-            return parseReturnStatement();
-        } else {
-            return parseAssignment();
+        if (_tokens.has(0)) {
+            switch (_tokens.getKind(0)) {
+                case LET:
+                    return parseDeclarationStatement();
+                case IF:
+                    return parseIfStatement();
+                case FOR:
+                    return parseForStatement();
+                case WHILE:
+                    return parseWhileStatement();
+                case RETURN:
+                    return parseReturnStatement();
+                default:
+                    break;
+            }
         }
+        return parseAssignment();
     }
 
     private Ast.Stmt parseAssignment() {
         Ast.Expr receiver = parseExpression();
 
         Ast.Stmt.Assignment assignment = null;
-        if (match("=")) {
+        if (match(Token.Kind.ASSIGN)) {
             // this is actually an assignment
             assignment = new Ast.Stmt.Assignment(receiver, parseExpression());
         }
@@ -220,24 +374,24 @@ public final class ParserCompiler {
      * statement, aka {@code LET}.
      */
     public Ast.Stmt.Declaration parseDeclarationStatement() throws ParseException {
-        match("LET");
+        match(Token.Kind.LET);
 
-        if (!match(Token.Type.IDENTIFIER)) {
+        if (!match(Token.Kind.IDENTIFIER)) {
             throw new ParseException("Expected: Identifier, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
 
         String name = getMatchedLiteral();
 
         Optional<String> type = Optional.empty();
-        if (match(":")) {
-            if (!match(Token.Type.IDENTIFIER)) {
+        if (match(Token.Kind.COLON)) {
+            if (!match(Token.Kind.IDENTIFIER)) {
                 throw new ParseException("Expected: Type declaration, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
             }
             type = Optional.of(getMatchedLiteral());
         }
 
         Optional<Ast.Expr> expression = Optional.empty();
-        if (match("=")) {
+        if (match(Token.Kind.ASSIGN)) {
             expression = Optional.of(parseExpression());
         }
         if (type.isEmpty() && expression.isEmpty()) {
@@ -253,27 +407,27 @@ public final class ParserCompiler {
      * {@code IF}.
      */
     public Ast.Stmt.If parseIfStatement() throws ParseException {
-        match("IF");
+        match(Token.Kind.IF);
 
         Ast.Expr condition = parseExpression();
 
-        if (!match("DO")) {
+        if (!match(Token.Kind.DO)) {
             throw new ParseException("Expected: `DO`, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
 
         List<Ast.Stmt> thenStatements = new ArrayList<>();
-        while (!peek("ELSE") && !peek("END")) {
+        while (!peek(Token.Kind.ELSE) && !peek(Token.Kind.END)) {
             thenStatements.add(parseStatement());
         }
 
         List<Ast.Stmt> elseStatements = new ArrayList<>();
-        if (match("ELSE")) {
-            while (!peek("END")) {
+        if (match(Token.Kind.ELSE)) {
+            while (!peek(Token.Kind.END)) {
                 elseStatements.add(parseStatement());
             }
         }
 
-        if (!match("END")) {
+        if (!match(Token.Kind.END)) {
             throw new ParseException("Expected: `END`, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
 
@@ -286,29 +440,29 @@ public final class ParserCompiler {
      * {@code FOR}.
      */
     public Ast.Stmt.For parseForStatement() throws ParseException {
-        match("FOR");
+        match(Token.Kind.FOR);
 
-        if (!match(Token.Type.IDENTIFIER)) {
+        if (!match(Token.Kind.IDENTIFIER)) {
             throw new ParseException("Expected: Identifier, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
 
         String name = getMatchedLiteral();
 
-        if (!match("IN")) {
+        if (!match(Token.Kind.IN)) {
             throw new ParseException("Expected: `IN`, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
 
         Ast.Expr value = parseExpression();
-        if (!match("DO")) {
+        if (!match(Token.Kind.DO)) {
             throw new ParseException("Expected: `DO`, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
 
         List<Ast.Stmt> statements = new ArrayList<>();
-        while (!peek("END")) {
+        while (!peek(Token.Kind.END)) {
             statements.add(parseStatement());
         }
 
-        if (!match("END")) {
+        if (!match(Token.Kind.END)) {
             throw new ParseException("Expected: `END`, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
 
@@ -321,18 +475,18 @@ public final class ParserCompiler {
      * {@code WHILE}.
      */
     public Ast.Stmt.While parseWhileStatement() throws ParseException {
-        match("WHILE");
+        match(Token.Kind.WHILE);
 
         Ast.Expr condition = parseExpression();
         List<Ast.Stmt> statements = new ArrayList<>();
 
-        if (!match("DO")) {
+        if (!match(Token.Kind.DO)) {
             throw new ParseException("Expected: `DO`, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
-        while (!peek("END")) {
+        while (!peek(Token.Kind.END)) {
             statements.add(parseStatement());
         }
-        if (!match("END")) {
+        if (!match(Token.Kind.END)) {
             throw new ParseException("Expected: `END`, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
 
@@ -345,7 +499,7 @@ public final class ParserCompiler {
      * {@code RETURN}.
      */
     public Ast.Stmt.Return parseReturnStatement() throws ParseException {
-        match("RETURN");
+        match(Token.Kind.RETURN);
         return new Ast.Stmt.Return(parseExpression());
     }
 
@@ -353,62 +507,55 @@ public final class ParserCompiler {
      * Parses the {@code expression} rule.
      */
     public Ast.Expr parseExpression() throws ParseException {
-        return parseLogicalExpression();
+        return parseBinaryExpression(Token.Kind.LOGICAL);
     }
 
     /**
      * Parses the {@code logical-expression} rule.
      */
     public Ast.Expr parseLogicalExpression() throws ParseException {
-        Ast.Expr expression = parseEqualityExpression();
-
-        while (match("AND") || match("OR")) {
-            expression = new Ast.Expr.Binary(getMatchedLiteral(), expression, parseEqualityExpression());
-        }
-
-        return expression;
+        return parseBinaryExpression(Token.Kind.LOGICAL);
     }
 
     /**
      * Parses the {@code equality-expression} rule.
      */
     public Ast.Expr parseEqualityExpression() throws ParseException {
-        Ast.Expr expression = parseAdditiveExpression();
-
-        while (match("<")
-                || match("<=")
-                || match(">")
-                || match(">=")
-                || match("==")
-                || match("!=")
-        ) {
-            expression = new Ast.Expr.Binary(getMatchedLiteral(), expression, parseAdditiveExpression());
-        }
-
-        return expression;
+        return parseBinaryExpression(Token.Kind.EQUALITY);
     }
 
     /**
      * Parses the {@code additive-expression} rule.
      */
     public Ast.Expr parseAdditiveExpression() throws ParseException {
-        Ast.Expr expression = parseMultiplicativeExpression();
-
-        while (match("+") || match("-")) {
-            expression = new Ast.Expr.Binary(getMatchedLiteral(), expression, parseMultiplicativeExpression());
-        }
-
-        return expression;
+        return parseBinaryExpression(Token.Kind.ADDITIVE);
     }
 
     /**
      * Parses the {@code multiplicative-expression} rule.
      */
     public Ast.Expr parseMultiplicativeExpression() throws ParseException {
+        return parseBinaryExpression(Token.Kind.MULTIPLICATIVE);
+    }
+
+    /**
+     * Parses the binary expression rules binding at least as tightly as
+     * {@code precedence} by precedence climbing: the operand is parsed once
+     * and each following operator takes a right operand binding strictly
+     * tighter than itself, so operators of the same level associate to the
+     * left exactly as the loops of the individual rules did.
+     */
+    private Ast.Expr parseBinaryExpression(int precedence) throws ParseException {
         Ast.Expr expression = parseSecondaryExpression();
 
-        while (match("*") || match("/")) {
-            expression = new Ast.Expr.Binary(getMatchedLiteral(), expression, parseSecondaryExpression());
+        while (_tokens.has(0)) {
+            int operator = _tokens.getKind(0).getPrecedence();
+            if (operator < precedence) {
+                break;
+            }
+            _tokens.advance();
+            String literal = getMatchedLiteral();
+            expression = new Ast.Expr.Binary(literal, expression, parseBinaryExpression(operator + 1));
         }
 
         return expression;
@@ -420,7 +567,7 @@ public final class ParserCompiler {
     public Ast.Expr parseSecondaryExpression() throws ParseException {
         Ast.Expr currentExpression = parsePrimaryExpression();
 
-        if (match(".")) {
+        if (match(Token.Kind.DOT)) {
             return parseExpressionAfterDot(currentExpression);
         }
 
@@ -433,34 +580,50 @@ public final class ParserCompiler {
      * functions.
      */
     public Ast.Expr parsePrimaryExpression() throws ParseException {
-        if (match("NIL")) {
-            return new Ast.Expr.Literal(null);
-        } else if (match("TRUE")) {
-            return new Ast.Expr.Literal(Boolean.TRUE);
-        } else if (match("FALSE")) {
-            return new Ast.Expr.Literal(Boolean.FALSE);
-        } else if (match(Token.Type.INTEGER)) {
-            return new Ast.Expr.Literal(new BigInteger(getMatchedLiteral()), Environment.Type.INTEGER);
-        } else if (match(Token.Type.DECIMAL)) {
-            return new Ast.Expr.Literal(new BigDecimal(getMatchedLiteral()), Environment.Type.DECIMAL);
-        } else if (match(Token.Type.CHARACTER)) {
-            return new Ast.Expr.Literal(getCleanedCharValue(getMatchedLiteral()), Environment.Type.CHARACTER);
-        } else if (match(Token.Type.STRING)) {
-            return new Ast.Expr.Literal(getCleanedStringValue(getMatchedLiteral()), Environment.Type.STRING);
-        } else if (peek("(")) {
-            return parseGroup();
-        } else if (peek(Token.Type.IDENTIFIER, "(")) {
-            match(Token.Type.IDENTIFIER);
+        if (!_tokens.has(0)) {
+            throw new ParseException("Unexpected token: `" + getPeekedLiteral() + "`.", getPeekedIndex());
+        }
+
+        switch (_tokens.getKind(0)) {
+            case NIL:
+                _tokens.advance();
+                return new Ast.Expr.Literal(null);
+            case TRUE:
+                _tokens.advance();
+                return new Ast.Expr.Literal(Boolean.TRUE);
+            case FALSE:
+                _tokens.advance();
+                return new Ast.Expr.Literal(Boolean.FALSE);
+            case INTEGER:
+                _tokens.advance();
+                return new Ast.Expr.Literal(new BigInteger(getMatchedLiteral()), Environment.Type.INTEGER);
+            case DECIMAL:
+                _tokens.advance();
+                return new Ast.Expr.Literal(new BigDecimal(getMatchedLiteral()), Environment.Type.DECIMAL);
+            case CHARACTER:
+                _tokens.advance();
+                return new Ast.Expr.Literal(getCleanedCharValue(getMatchedLiteral()), Environment.Type.CHARACTER);
+            case STRING:
+                _tokens.advance();
+                return new Ast.Expr.Literal(getCleanedStringValue(getMatchedLiteral()), Environment.Type.STRING);
+            case LEFT_PAREN:
+                return parseGroup();
+            default:
+                break;
+        }
+
+        if (peek(Token.Kind.IDENTIFIER, Token.Kind.LEFT_PAREN)) {
+            match(Token.Kind.IDENTIFIER);
             String name = getMatchedLiteral();
-            match("(");
+            match(Token.Kind.LEFT_PAREN);
             Ast.Expr expression = new Ast.Expr.Function(Optional.empty(), name, matchAndGetArguments());
 
-            if (!match(")")) {
+            if (!match(Token.Kind.RIGHT_PAREN)) {
                 throw new ParseException("Expected: `)`, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
             }
 
             return expression;
-        } else if (match(Token.Type.IDENTIFIER)) {
+        } else if (match(Token.Kind.IDENTIFIER)) {
             return new Ast.Expr.Access(Optional.empty(), getMatchedLiteral());
         } else {
             throw new ParseException("Unexpected token: `" + getPeekedLiteral() + "`.", getPeekedIndex());
@@ -470,10 +633,10 @@ public final class ParserCompiler {
     private List<Ast.Expr> matchAndGetArguments() {
         List<Ast.Expr> arguments = new ArrayList<>();
 
-        while (!peek(")")) {
+        while (!peek(Token.Kind.RIGHT_PAREN)) {
             arguments.add(parseExpression());
 
-            if (match(",") && peek(")")) {
+            if (match(Token.Kind.COMMA) && peek(Token.Kind.RIGHT_PAREN)) {
                 throw new ParseException("Expected: Literal or Identifier, received: `" + getPeekedLiteral() + "`.",
                         getPeekedIndex());
             }
@@ -483,18 +646,18 @@ public final class ParserCompiler {
     }
 
     private void matchAndGetParameters(List<String> parameters, List<String> parametersTypes) {
-        while (match(Token.Type.IDENTIFIER)) {
+        while (match(Token.Kind.IDENTIFIER)) {
             parameters.add(getMatchedLiteral());
 
-            if (!match(":")) {
+            if (!match(Token.Kind.COLON)) {
                 throw new ParseException("Expected: Type declaration, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
             }
-            if (!match(Token.Type.IDENTIFIER)) {
+            if (!match(Token.Kind.IDENTIFIER)) {
                 throw new ParseException("Expected: Type declaration, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
             }
             parametersTypes.add(getMatchedLiteral());
 
-            if (!match(","))
+            if (!match(Token.Kind.COMMA))
                 break;
         }
     }
@@ -502,19 +665,19 @@ public final class ParserCompiler {
     private Ast.Expr parseExpressionAfterDot(Ast.Expr receiver) {
         Ast.Expr currentExpression;
 
-        if (peek(Token.Type.IDENTIFIER, "(")) {
+        if (peek(Token.Kind.IDENTIFIER, Token.Kind.LEFT_PAREN)) {
             // Ast.Expr.Function
-            match(Token.Type.IDENTIFIER);
+            match(Token.Kind.IDENTIFIER);
             String name = getMatchedLiteral();
-            match("(");
+            match(Token.Kind.LEFT_PAREN);
             List<Ast.Expr> arguments = matchAndGetArguments();
 
-            if (!match(")")) {
+            if (!match(Token.Kind.RIGHT_PAREN)) {
                 throw new ParseException("Expected: `)`, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
             }
 
             currentExpression = new Ast.Expr.Function(Optional.of(receiver), name, arguments);
-        } else if (match(Token.Type.IDENTIFIER)) {
+        } else if (match(Token.Kind.IDENTIFIER)) {
             // Ast.Expr.Access
             currentExpression = new Ast.Expr.Access(Optional.of(receiver), getMatchedLiteral());
         } else {
@@ -522,7 +685,7 @@ public final class ParserCompiler {
             throw new ParseException("Expected: Identifier, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
 
-        if (match(".")) {
+        if (match(Token.Kind.DOT)) {
             // recursive expression construction
             return parseExpressionAfterDot(currentExpression);
         }
@@ -531,11 +694,11 @@ public final class ParserCompiler {
     }
 
     private Ast.Expr.Group parseGroup() {
-        match("(");
+        match(Token.Kind.LEFT_PAREN);
 
         Ast.Expr expression = parseExpression();
 
-        if (!match(")")) {
+        if (!match(Token.Kind.RIGHT_PAREN)) {
             throw new ParseException("Expected: `)`, received: `" + getPeekedLiteral() + "`.", getPeekedIndex());
         }
 
@@ -543,19 +706,19 @@ public final class ParserCompiler {
     }
 
     private String getMatchedLiteral() {
-        return _tokens.get(-1).getLiteral();
+        return _tokens.getLiteral(-1);
     }
 
     private int getMatchedIndex() {
-        return _tokens.get(-1).getIndex();
+        return _tokens.getIndex(-1);
     }
 
     private String getPeekedLiteral() {
-        return _tokens.has(0) ? _tokens.get(0).getLiteral() : "";
+        return _tokens.has(0) ? _tokens.getLiteral(0) : "";
     }
 
     private int getPeekedIndex() {
-        return _tokens.has(0) ? _tokens.get(0).getIndex() : getMatchedIndex() + getMatchedLiteral().length();
+        return _tokens.has(0) ? _tokens.getIndex(0) : getMatchedIndex() + getMatchedLiteral().length();
     }
 
     private String getCleanedStringValue(String rawValue) {
@@ -574,72 +737,111 @@ public final class ParserCompiler {
     }
 
     /**
-     * As in the lexer, returns {@code true} if the current sequence of tokens
-     * matches the given patterns. Unlike the lexer, the pattern is not a regex;
-     * instead it is either a {@link Token.Type}, which matches if the token's
-     * type is the same, or a {@link String}, which matches if the token's
-     * literal is the same.
-     * <p>
-     * In other words, {@code Token(IDENTIFIER, "literal")} is matched by both
-     * {@code peek(Token.Type.IDENTIFIER)} and {@code peek("literal")}.
+     * Returns {@code true} if the token {@code offset} ahead exists and is of
+     * the given kind. The {@link Token.Kind#IDENTIFIER} pattern matches every
+     * identifier token, keywords included, as names are not reserved.
      */
-    private boolean peek(Object... patterns) {
-        for (int i = 0; i < patterns.length; ++i) {
-            if (!_tokens.has(i)) {
-                return false;
-            } else if (patterns[i] instanceof Token.Type) {
-                if (patterns[i] != _tokens.get(i).getType()) {
-                    return false;
-                }
-            } else if (patterns[i] instanceof String) {
-                if (!patterns[i].equals(_tokens.get(i).getLiteral())) {
-                    return false;
-                }
-            } else {
-                throw new AssertionError("Invalid pattern object: " + patterns[i].getClass());
-            }
+    private boolean peek(int offset, Token.Kind kind) {
+        if (!_tokens.has(offset)) {
+            return false;
         }
+        Token.Kind actual = _tokens.getKind(offset);
+        return kind == Token.Kind.IDENTIFIER ? actual.getType() == Token.Type.IDENTIFIER : actual == kind;
+    }
 
-        return true;
+    private boolean peek(Token.Kind kind) {
+        return peek(0, kind);
+    }
+
+    private boolean peek(Token.Kind first, Token.Kind second) {
+        return peek(0, first) && peek(1, second);
     }
 
     /**
-     * As in the lexer, returns {@code true} if {@link #peek(Object...)} is true
-     * and advances the token stream.
+     * Returns {@code true} if {@link #peek(Token.Kind)} is true and advances
+     * the token stream.
      */
-    private boolean match(Object... patterns) {
-        if (!peek(patterns)) {
+    private boolean match(Token.Kind kind) {
+        if (!peek(kind)) {
             return false;
         }
+        _tokens.advance();
+        return true;
+    }
 
-        for (int i = 0; i < patterns.length; ++i) {
-            _tokens.advance();
+    private boolean match(Token.Kind first, Token.Kind second) {
+        if (!peek(first, second)) {
+            return false;
         }
-
+        _tokens.advance();
+        _tokens.advance();
         return true;
     }
 
+    /**
+     * A bounded window over the token source. It holds the last matched token
+     * (for {@link #getMatchedLiteral()}) and up to {@link #LOOKAHEAD} tokens
+     * ahead, which is the longest pattern passed to {@link #peek(Token.Kind, Token.Kind)}.
+     * Over a {@link TokenBuffer} the window is not needed, and the tokens are
+     * read from the buffer's columns without being materialized.
+     */
     private static final class TokenStream {
 
-        private final List<Token> tokens;
+        private static final int LOOKAHEAD = 2;
+        private static final int WINDOW = 4; // LOOKAHEAD + 1, rounded up to a power of two
+
+        private final Supplier<Token> source;
+        private final TokenBuffer buffer;
+        private final Token[] window = new Token[WINDOW];
         private int index = 0;
+        private int pulled = 0;
+        private boolean exhausted = false;
 
-        private TokenStream(List<Token> tokens) {
-            this.tokens = tokens;
+        private TokenStream(Supplier<Token> source) {
+            this.source = source;
+            this.buffer = null;
+        }
+
+        private TokenStream(TokenBuffer buffer, int start, int end) {
+            this.source = null;
+            this.buffer = buffer;
+            this.index = start;
+            this.pulled = end;
+            this.exhausted = true;
         }
 
         /**
          * Returns true if there is a token at index + offset.
          */
         public boolean has(int offset) {
-            return index + offset < tokens.size();
+            if (offset >= LOOKAHEAD) {
+                throw new IndexOutOfBoundsException("Token offset " + offset + " is outside the window at " + index + ".");
+            }
+            return fill(index + offset);
+        }
+
+        /**
+         * Gets the kind of the token at index + offset.
+         */
+        public Token.Kind getKind(int offset) {
+            int position = position(offset);
+            return buffer != null ? buffer.getKind(position) : window[position & (WINDOW - 1)].getKind();
+        }
+
+        /**
+         * Gets the literal of the token at index + offset.
+         */
+        public String getLiteral(int offset) {
+            int position = position(offset);
+            return buffer != null ? buffer.getLiteral(position) : window[position & (WINDOW - 1)].getLiteral();
         }
 
         /**
-         * Gets the token at index + offset.
+         * Gets the source index of the token at index + offset.
          */
-        public Token get(int offset) {
-            return tokens.get(index + offset);
+        public int getIndex(int offset) {
+            int position = position(offset);
+            return buffer != null ? buffer.getIndex(position) : window[position & (WINDOW - 1)].getIndex();
         }
 
         /**
@@ -649,6 +851,26 @@ public final class ParserCompiler {
             index++;
         }
 
+        private int position(int offset) {
+            int position = index + offset;
+            if (position < 0 || offset < -1 || offset >= LOOKAHEAD || !fill(position)) {
+                throw new IndexOutOfBoundsException("Token offset " + offset + " is outside the window at " + index + ".");
+            }
+            return position;
+        }
+
+        private boolean fill(int position) {
+            while (pulled <= position && !exhausted) {
+                Token token = source.get();
+                if (token == null) {
+                    exhausted = true;
+                } else {
+                    window[pulled++ & (WINDOW - 1)] = token;
+                }
+            }
+            return position < pulled;
+        }
+
     }
 
 }
@@ -288,62 +288,55 @@ public final class ParserInterpreter {
      * Parses the {@code expression} rule.
      */
     public Ast.Expr parseExpression() throws ParseException {
-        return parseLogicalExpression();
+        return parseBinaryExpression(Token.Kind.LOGICAL);
     }
 
     /**
      * Parses the {@code logical-expression} rule.
      */
     public Ast.Expr parseLogicalExpression() throws ParseException {
-        Ast.Expr expression = parseEqualityExpression();
-
-        while (match("AND") || match("OR")) {
-            expression = new Ast.Expr.Binary(getMatchedLiteral(), expression, parseEqualityExpression());
-        }
-
-        return expression;
+        return parseBinaryExpression(Token.Kind.LOGICAL);
     }
 
     /**
      * Parses the {@code equality-expression} rule.
      */
     public Ast.Expr parseEqualityExpression() throws ParseException {
-        Ast.Expr expression = parseAdditiveExpression();
-
-        while (match("<")
-                || match("<=")
-                || match(">")
-                || match(">=")
-                || match("==")
-                || match("!=")
-        ) {
-            expression = new Ast.Expr.Binary(getMatchedLiteral(), expression, parseAdditiveExpression());
-        }
-
-        return expression;
+        return parseBinaryExpression(Token.Kind.EQUALITY);
     }
 
     /**
      * Parses the {@code additive-expression} rule.
      */
     public Ast.Expr parseAdditiveExpression() throws ParseException {
-        Ast.Expr expression = parseMultiplicativeExpression();
-
-        while (match("+") || match("-")) {
-            expression = new Ast.Expr.Binary(getMatchedLiteral(), expression, parseMultiplicativeExpression());
-        }
-
-        return expression;
+        return parseBinaryExpression(Token.Kind.ADDITIVE);
     }
 
     /**
      * Parses the {@code multiplicative-expression} rule.
      */
     public Ast.Expr parseMultiplicativeExpression() throws ParseException {
+        return parseBinaryExpression(Token.Kind.MULTIPLICATIVE);
+    }
+
+    /**
+     * Parses the binary expression rules binding at least as tightly as
+     * {@code precedence} by precedence climbing: the operand is parsed once
+     * and each following operator takes a right operand binding strictly
+     * tighter than itself, so operators of the same level associate to the
+     * left exactly as the loops of the individual rules did.
+     */
+    private Ast.Expr parseBinaryExpression(int precedence) throws ParseException {
         Ast.Expr expression = parseSecondaryExpression();
 
-        while (match("*") || match("/")) {
-            expression = new Ast.Expr.Binary(getMatchedLiteral(), expression, parseSecondaryExpression());
+        while (tokens.has(0)) {
+            int operator = tokens.get(0).getKind().getPrecedence();
+            if (operator < precedence) {
+                break;
+            }
+            tokens.advance();
+            String literal = getMatchedLiteral();
+            expression = new Ast.Expr.Binary(literal, expression, parseBinaryExpression(operator + 1));
         }
 
         return expression;
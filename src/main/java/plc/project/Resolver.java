@@ -0,0 +1,222 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binds the local variables of each method to a (depth, slot) pair, so the
+ * {@link Interpreter} can keep them in array-backed frames instead of walking
+ * a chain of {@link Scope}s.
+ * <p>
+ * A frame is created once per method call, and for each if statement or
+ * loop whose blocks declare variables, a for loop always declaring its own.
+ * A block without declarations is given a frame size of zero and runs in the
+ * enclosing frame, so it is not counted in the depth of the names it uses.
+ * Names which are not declared inside the method are left unresolved and are
+ * looked up as globals at runtime. A method whose locals cannot be bound
+ * statically without changing behavior (a parameter or variable declared
+ * twice in the same block, which the interpreter reports when it executes)
+ * is left unresolved as a whole.
+ */
+public final class Resolver implements Ast.Visitor<Void> {
+
+    private final Deque<Map<String, Integer>> _blocks = new ArrayDeque<>();
+    private boolean _resolvable;
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        for (Ast.Method method : ast.getMethods()) {
+            visit(method);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Struct ast) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Field ast) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Method ast) {
+        _blocks.clear();
+        _resolvable = true;
+
+        _blocks.push(new HashMap<>());
+        for (String parameter : ast.getParameters()) {
+            declare(parameter);
+        }
+        visit(ast.getStatements());
+        int frameSize = _blocks.pop().size();
+
+        ast.setFrameSize(_resolvable ? frameSize : -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Declaration ast) {
+        if (ast.getValue().isPresent()) {
+            visit(ast.getValue().get());
+        }
+        ast.setSlot(declare(ast.getName()));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Assignment ast) {
+        visit(ast.getReceiver());
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.If ast) {
+        visit(ast.getCondition());
+        if (!declares(ast.getThenStatements()) && !declares(ast.getElseStatements())) {
+            visit(ast.getThenStatements());
+            visit(ast.getElseStatements());
+            ast.setFrameSize(0);
+            return null;
+        }
+
+        // only one branch executes, so both may use the same slots
+        _blocks.push(new HashMap<>());
+        visit(ast.getThenStatements());
+        int thenSize = _blocks.pop().size();
+
+        _blocks.push(new HashMap<>());
+        visit(ast.getElseStatements());
+        int elseSize = _blocks.pop().size();
+
+        ast.setFrameSize(Math.max(thenSize, elseSize));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.For ast) {
+        visit(ast.getValue());
+
+        _blocks.push(new HashMap<>());
+        declare(ast.getName());
+        visit(ast.getStatements());
+        ast.setFrameSize(_blocks.pop().size());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.While ast) {
+        visit(ast.getCondition());
+        if (!declares(ast.getStatements())) {
+            visit(ast.getStatements());
+            ast.setFrameSize(0);
+            return null;
+        }
+
+        _blocks.push(new HashMap<>());
+        visit(ast.getStatements());
+        ast.setFrameSize(_blocks.pop().size());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Return ast) {
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Literal ast) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Group ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Binary ast) {
+        visit(ast.getLeft());
+        visit(ast.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Access ast) {
+        if (ast.getReceiver().isPresent()) {
+            visit(ast.getReceiver().get());
+            return null;
+        }
+
+        int depth = 0;
+        for (Map<String, Integer> block : _blocks) {
+            Integer slot = block.get(ast.getName());
+            if (slot != null) {
+                ast.setSlot(depth, slot);
+                return null;
+            }
+            depth++;
+        }
+
+        ast.setSlot(-1, -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Function ast) {
+        if (ast.getReceiver().isPresent()) {
+            visit(ast.getReceiver().get());
+        }
+        for (Ast.Expr argument : ast.getArguments()) {
+            visit(argument);
+        }
+        return null;
+    }
+
+    private void visit(List<Ast.Stmt> statements) {
+        for (Ast.Stmt statement : statements) {
+            visit(statement);
+        }
+    }
+
+    /**
+     * Returns whether a block declares variables of its own, as opposed to
+     * only in nested blocks.
+     */
+    private static boolean declares(List<Ast.Stmt> statements) {
+        for (Ast.Stmt statement : statements) {
+            if (statement instanceof Ast.Stmt.Declaration) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Declares {@code name} in the innermost block and returns its slot.
+     */
+    private int declare(String name) {
+        Map<String, Integer> block = _blocks.peek();
+        if (block.containsKey(name)) {
+            _resolvable = false;
+            return block.get(name);
+        }
+        block.put(name, block.size());
+        return block.size() - 1;
+    }
+
+}
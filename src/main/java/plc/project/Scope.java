@@ -1,19 +1,35 @@
 package plc.project;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
+/**
+ * Names are usually the canonical strings of a {@link SymbolTable}, whose
+ * hash codes are cached and which compare equal by identity. Functions are
+ * keyed by name and then indexed by arity, so no key is built per lookup.
+ * <p>
+ * All the scopes below one root share a generation, which every function
+ * definition among them advances. A {@link CallSite} uses it to tell whether
+ * a lookup it cached still holds, so definitions in unrelated scope chains,
+ * such as those of another compilation, leave its cache alone.
+ */
 public final class Scope {
 
+    private static final Environment.Function[] NO_FUNCTIONS = new Environment.Function[0];
+
     private final Scope _parent;
+    private final AtomicInteger _generation; // shared with the root
     private final Map<String, Environment.Variable> _variables = new HashMap<>();
-    private final Map<String, Environment.Function> _functions = new HashMap<>();
+    private final Map<String, Environment.Function[]> _functions = new HashMap<>();
 
     public Scope(Scope parent) {
         _parent = parent;
+        _generation = parent == null ? new AtomicInteger() : parent._generation;
     }
 
     public Scope getParent() {
@@ -35,13 +51,13 @@ public final class Scope {
     }
 
     public Environment.Variable lookupVariable(String name) {
-        if (_variables.containsKey(name)) {
-            return _variables.get(name);
-        } else if (_parent != null) {
-            return _parent.lookupVariable(name);
-        } else {
-            throw new RuntimeException("The variable " + name + " is not defined in this scope.");
+        for (Scope scope = this; scope != null; scope = scope._parent) {
+            Environment.Variable variable = scope._variables.get(name);
+            if (variable != null) {
+                return variable;
+            }
         }
+        throw new RuntimeException("The variable " + name + " is not defined in this scope.");
     }
 
     public void defineFunction(String name, int arity, Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
@@ -53,23 +69,100 @@ public final class Scope {
     }
 
     public Environment.Function defineFunction(String name, String jvmName, List<Environment.Type> parameterTypes, Environment.Type returnType, java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
-        if (_functions.containsKey(name + "/" + parameterTypes.size())) {
-            throw new RuntimeException("The function " + name + "/" + parameterTypes.size() + " is already defined in this scope.");
+        int arity = parameterTypes.size();
+        Environment.Function[] functions = _functions.getOrDefault(name, NO_FUNCTIONS);
+        if (arity < functions.length && functions[arity] != null) {
+            throw new RuntimeException("The function " + name + "/" + arity + " is already defined in this scope.");
         } else {
+            if (arity >= functions.length) {
+                functions = Arrays.copyOf(functions, arity + 1);
+                _functions.put(name, functions);
+            }
             Environment.Function func = new Environment.Function(name, jvmName, parameterTypes, returnType, function);
-            _functions.put(func.getName() + "/" + func.getParameterTypes().size(), func);
+            functions[arity] = func;
+            _generation.incrementAndGet();
             return func;
         }
     }
 
+    /**
+     * Returns whether the variable is defined in this scope itself, ignoring
+     * its parents.
+     */
+    public boolean definesVariable(String name) {
+        return _variables.containsKey(name);
+    }
+
+    /**
+     * Returns whether the function is defined in this scope itself, ignoring
+     * its parents.
+     */
+    public boolean definesFunction(String name, int arity) {
+        Environment.Function[] functions = _functions.get(name);
+        return functions != null && arity < functions.length && functions[arity] != null;
+    }
+
     public Environment.Function lookupFunction(String name, int arity) {
-        if (_functions.containsKey(name + "/" + arity)) {
-            return _functions.get(name + "/" + arity);
-        } else if (_parent != null) {
-            return _parent.lookupFunction(name, arity);
-        } else {
-            throw new RuntimeException("The function " + name + "/" + arity + " is not defined in this scope.");
+        for (Scope scope = this; scope != null; scope = scope._parent) {
+            Environment.Function[] functions = scope._functions.get(name);
+            if (functions != null && arity < functions.length && functions[arity] != null) {
+                return functions[arity];
+            }
+        }
+        throw new RuntimeException("The function " + name + "/" + arity + " is not defined in this scope.");
+    }
+
+    /**
+     * Returns the current generation of this scope's chain, which advances
+     * whenever a function is defined in any scope below the same root.
+     */
+    public int getGeneration() {
+        return _generation.get();
+    }
+
+    /**
+     * Returns every function visible from this scope, keyed by name and
+     * indexed by arity like the functions of a single scope, with inner
+     * definitions hiding those of the same name and arity further out.
+     */
+    public Map<String, Environment.Function[]> flattenFunctions() {
+        Map<String, Environment.Function[]> flattened = new HashMap<>();
+        for (Scope scope = this; scope != null; scope = scope._parent) {
+            scope._functions.forEach((name, functions) -> {
+                Environment.Function[] visible = flattened.getOrDefault(name, NO_FUNCTIONS);
+                if (visible.length < functions.length) {
+                    visible = Arrays.copyOf(visible, functions.length);
+                    flattened.put(name, visible);
+                }
+                for (int arity = 0; arity < functions.length; arity++) {
+                    if (visible[arity] == null) {
+                        visible[arity] = functions[arity];
+                    }
+                }
+            });
         }
+        return flattened;
+    }
+
+    /**
+     * Looks up a function through a monomorphic inline cache, returning
+     * {@code cached} itself if no function has been defined below this
+     * scope's root since it was filled, by a lookup from the same innermost
+     * scope defining any functions. Scopes without functions are skipped to
+     * find that one, so blocks and calls which create a scope each time
+     * still hit the cache. Otherwise, the lookup is done again and a new
+     * call site is returned for the caller to keep.
+     */
+    public CallSite lookupFunction(String name, int arity, CallSite cached) {
+        int generation = _generation.get();
+        Scope scope = this;
+        while (scope._functions.isEmpty() && scope._parent != null) {
+            scope = scope._parent;
+        }
+        if (cached != null && cached._scope == scope && cached._generation == generation) {
+            return cached;
+        }
+        return new CallSite(scope, generation, scope.lookupFunction(name, arity));
     }
 
     @Override
@@ -77,8 +170,41 @@ public final class Scope {
         return "Scope{" +
                 "parent=" + _parent +
                 ", variables=" + _variables.keySet() +
-                ", functions=" + _functions.keySet() +
+                ", functions=" + signatures() +
                 '}';
     }
 
+    private List<String> signatures() {
+        List<String> signatures = new ArrayList<>();
+        _functions.forEach((name, functions) -> {
+            for (int arity = 0; arity < functions.length; arity++) {
+                if (functions[arity] != null) {
+                    signatures.add(name + "/" + arity);
+                }
+            }
+        });
+        return signatures;
+    }
+
+    /**
+     * The result of a function lookup, cached at the call site which made it.
+     */
+    public static final class CallSite {
+
+        private final Scope _scope;
+        private final int _generation;
+        private final Environment.Function _function;
+
+        private CallSite(Scope scope, int generation, Environment.Function function) {
+            _scope = scope;
+            _generation = generation;
+            _function = function;
+        }
+
+        public Environment.Function getFunction() {
+            return _function;
+        }
+
+    }
+
 }
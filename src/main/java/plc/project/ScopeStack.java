@@ -0,0 +1,137 @@
+package plc.project;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A flat, block-structured symbol table in the style of LeBlanc and Cook,
+ * used by the {@link Analyzer} for everything declared inside methods.
+ * Instead of one {@link Scope} per block, all names live in a single hash
+ * table mapping each one to its innermost visible definition, which in turn
+ * links to the definition it shadows. Entering a block only increments the
+ * level, and exiting it removes the definitions made at that level, so
+ * lookups cost the same however deeply blocks are nested.
+ * <p>
+ * Level zero is the base {@link Scope}: definitions made there go to it,
+ * and names which the table does not define are looked up in it.
+ */
+public final class ScopeStack {
+
+    private final Scope _base;
+    private final Map<String, Entry> _entries = new HashMap<>();
+    private Entry[] _levels = new Entry[16]; // the last entry defined at each level
+    private int _level = 0;
+
+    public ScopeStack(Scope base) {
+        _base = base;
+    }
+
+    public Scope getBase() {
+        return _base;
+    }
+
+    public int getLevel() {
+        return _level;
+    }
+
+    public void enter() {
+        if (++_level == _levels.length) {
+            _levels = Arrays.copyOf(_levels, _level * 2);
+        }
+    }
+
+    /**
+     * Exits the innermost level, removing every definition made in it.
+     */
+    public void exit() {
+        if (_level == 0) {
+            throw new IllegalStateException("The base scope cannot be exited.");
+        }
+        for (Entry entry = _levels[_level]; entry != null; entry = entry.previous) {
+            if (entry.shadowed == null) {
+                _entries.remove(entry.name);
+            } else {
+                _entries.put(entry.name, entry.shadowed);
+            }
+        }
+        _levels[_level--] = null;
+    }
+
+    public Environment.Variable defineVariable(String name, String jvmName, Environment.Type type, Environment.PlcObject value) {
+        if (_level == 0) {
+            return _base.defineVariable(name, jvmName, type, value);
+        } else if (find(name, -1, true) != null) {
+            throw new RuntimeException("The variable " + name + " is already defined in this scope.");
+        }
+        Environment.Variable variable = new Environment.Variable(name, jvmName, type, value);
+        define(name, -1, variable);
+        return variable;
+    }
+
+    public Environment.Variable lookupVariable(String name) {
+        Entry entry = find(name, -1, false);
+        return entry != null ? (Environment.Variable) entry.value : _base.lookupVariable(name);
+    }
+
+    public Environment.Function defineFunction(String name, String jvmName, List<Environment.Type> parameterTypes, Environment.Type returnType, java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
+        int arity = parameterTypes.size();
+        if (_level == 0) {
+            return _base.defineFunction(name, jvmName, parameterTypes, returnType, function);
+        } else if (find(name, arity, true) != null) {
+            throw new RuntimeException("The function " + name + "/" + arity + " is already defined in this scope.");
+        }
+        Environment.Function func = new Environment.Function(name, jvmName, parameterTypes, returnType, function);
+        define(name, arity, func);
+        return func;
+    }
+
+    public Environment.Function lookupFunction(String name, int arity) {
+        Entry entry = find(name, arity, false);
+        return entry != null ? (Environment.Function) entry.value : _base.lookupFunction(name, arity);
+    }
+
+    private void define(String name, int arity, Object value) {
+        Entry entry = new Entry(name, arity, _level, value, _entries.get(name), _levels[_level]);
+        _entries.put(name, entry);
+        _levels[_level] = entry;
+    }
+
+    /**
+     * Returns the innermost definition of a variable, for an arity of -1, or
+     * of a function with the given arity, optionally only at the current
+     * level. Definitions of the same name are few, so this walks them all.
+     */
+    private Entry find(String name, int arity, boolean current) {
+        for (Entry entry = _entries.get(name); entry != null; entry = entry.shadowed) {
+            if (current && entry.level != _level) {
+                return null;
+            } else if (entry.arity == arity) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static final class Entry {
+
+        private final String name;
+        private final int arity; // -1 for a variable
+        private final int level;
+        private final Object value;
+        private final Entry shadowed; // the previous definition of the name
+        private final Entry previous; // the previous definition at the level
+
+        private Entry(String name, int arity, int level, Object value, Entry shadowed, Entry previous) {
+            this.name = name;
+            this.arity = arity;
+            this.level = level;
+            this.value = value;
+            this.shadowed = shadowed;
+            this.previous = previous;
+        }
+
+    }
+
+}
@@ -0,0 +1,63 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The field layout of a struct. Each distinct field name is given a slot in
+ * declaration order, and every instance keeps its fields in an array indexed
+ * by those slots, so an access whose slot is known is a single indexed load.
+ * Instances share their shape with the struct which declared them, so two
+ * objects have the same layout exactly when they have the same shape.
+ */
+public final class Shape {
+
+    private final String _name;
+    private final List<String> _fields = new ArrayList<>();
+    private final Map<String, Integer> _slots = new HashMap<>();
+
+    public Shape(String name, List<String> fields) {
+        _name = name;
+        for (String field : fields) {
+            if (_slots.putIfAbsent(field, _fields.size()) == null) {
+                _fields.add(field);
+            }
+        }
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    /**
+     * Returns the distinct field names in slot order, which is shorter than
+     * the fields of the struct if it declares a name twice.
+     */
+    public List<String> getFields() {
+        return Collections.unmodifiableList(_fields);
+    }
+
+    public int getSize() {
+        return _fields.size();
+    }
+
+    /**
+     * Returns the slot of the given field, or -1 if there is no such field.
+     */
+    public int getSlot(String field) {
+        Integer slot = _slots.get(field);
+        return slot != null ? slot : -1;
+    }
+
+    @Override
+    public String toString() {
+        return "Shape{" +
+                "name='" + _name + '\'' +
+                ", fields=" + _fields +
+                '}';
+    }
+
+}
@@ -0,0 +1,87 @@
+package plc.project;
+
+/**
+ * Interns the identifiers of a compilation, giving each distinct name one
+ * canonical {@link String} whose hash code is computed once. Since every
+ * occurrence of a name then shares that string, lookups in {@link Scope}
+ * hash nothing and compare by identity before falling back to
+ * {@link String#equals(Object)}.
+ * <p>
+ * Identifiers are interned straight from their span in the source, and a
+ * name which was seen before creates no string at all.
+ */
+public final class SymbolTable {
+
+    private String[] _slots = new String[256];
+    private int _size = 0;
+
+    /**
+     * Returns the canonical name for the characters of {@code source} from
+     * {@code start} to {@code end}, interning them if they are new.
+     */
+    public String intern(CharSequence source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+
+        int mask = _slots.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            String name = _slots[slot];
+            if (name == null) {
+                return add(slot, source.subSequence(start, end).toString());
+            } else if (name.hashCode() == hash && matches(name, source, start, end)) {
+                return name;
+            }
+        }
+    }
+
+    public String intern(String name) {
+        return intern(name, 0, name.length());
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    private String add(int slot, String name) {
+        name.hashCode(); // cached in the string from here on
+        _slots[slot] = name;
+        if (++_size * 2 > _slots.length) {
+            rehash();
+        }
+        return name;
+    }
+
+    private void rehash() {
+        String[] names = _slots;
+        _slots = new String[names.length * 2];
+        int mask = _slots.length - 1;
+        for (String name : names) {
+            if (name != null) {
+                int slot = spread(name.hashCode()) & mask;
+                while (_slots[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                _slots[slot] = name;
+            }
+        }
+    }
+
+    private static boolean matches(String name, CharSequence source, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (name.charAt(i - start) != source.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+}
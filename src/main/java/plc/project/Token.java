@@ -11,12 +11,152 @@ public final class Token {
         OPERATOR
     }
 
+    /**
+     * A finer classification than {@link Type}, giving each keyword and
+     * operator of the language its own kind so the parser can dispatch on it
+     * with a switch instead of comparing literals. Any other token keeps the
+     * kind matching its type.
+     */
+    public enum Kind {
+        IDENTIFIER(null, 0),
+        INTEGER(null, 0),
+        DECIMAL(null, 0),
+        CHARACTER(null, 0),
+        STRING(null, 0),
+        OPERATOR(null, 0),
+
+        LET("LET", 0),
+        DEF("DEF", 0),
+        TYPE("TYPE", 0),
+        DO("DO", 0),
+        END("END", 0),
+        IF("IF", 0),
+        ELSE("ELSE", 0),
+        FOR("FOR", 0),
+        IN("IN", 0),
+        WHILE("WHILE", 0),
+        RETURN("RETURN", 0),
+        NIL("NIL", 0),
+        TRUE("TRUE", 0),
+        FALSE("FALSE", 0),
+        AND("AND", Kind.LOGICAL),
+        OR("OR", Kind.LOGICAL),
+
+        LEFT_PAREN("(", 0),
+        RIGHT_PAREN(")", 0),
+        COMMA(",", 0),
+        COLON(":", 0),
+        ASSIGN("=", 0),
+        DOT(".", 0),
+        LESS("<", Kind.EQUALITY),
+        LESS_EQUAL("<=", Kind.EQUALITY),
+        GREATER(">", Kind.EQUALITY),
+        GREATER_EQUAL(">=", Kind.EQUALITY),
+        EQUAL("==", Kind.EQUALITY),
+        NOT_EQUAL("!=", Kind.EQUALITY),
+        PLUS("+", Kind.ADDITIVE),
+        MINUS("-", Kind.ADDITIVE),
+        TIMES("*", Kind.MULTIPLICATIVE),
+        DIVIDE("/", Kind.MULTIPLICATIVE);
+
+        /**
+         * The binary operator levels, from the loosest binding, which the
+         * parser's binary expression rules match by.
+         */
+        public static final int LOGICAL = 1, EQUALITY = 2, ADDITIVE = 3, MULTIPLICATIVE = 4;
+
+        private static final int TABLE_SIZE = 64;
+        private static final Kind[] TABLE = new Kind[TABLE_SIZE];
+        private static final Kind[] TYPES = {IDENTIFIER, INTEGER, DECIMAL, CHARACTER, STRING, OPERATOR};
+
+        static {
+            for (Kind kind : values()) {
+                if (kind._literal != null) {
+                    int hash = hash(kind._literal, 0, kind._literal.length());
+                    if (TABLE[hash] != null) {
+                        throw new AssertionError("Keyword hash collision between " + TABLE[hash] + " and " + kind + ".");
+                    }
+                    TABLE[hash] = kind;
+                }
+            }
+        }
+
+        private final Type _type;
+        private final String _literal;
+        private final int _precedence;
+
+        Kind(String literal, int precedence) {
+            _type = literal == null ? Type.values()[ordinal()]
+                    : Character.isLetter(literal.charAt(0)) ? Type.IDENTIFIER : Type.OPERATOR;
+            _literal = literal;
+            _precedence = precedence;
+        }
+
+        /**
+         * Returns the type of the tokens of this kind, which a keyword or
+         * operator kind determines on its own.
+         */
+        public Type getType() {
+            return _type;
+        }
+
+        /**
+         * Returns the literal of the keyword or operator of this kind, or
+         * null if tokens of this kind have varying literals.
+         */
+        public String getLiteral() {
+            return _literal;
+        }
+
+        /**
+         * Returns the binary operator level of this kind, or 0 if it is not
+         * a binary operator.
+         */
+        public int getPrecedence() {
+            return _precedence;
+        }
+
+        public static Kind of(Type type, String literal) {
+            return of(type, literal, 0, literal.length());
+        }
+
+        /**
+         * Classifies the token spanning {@code start} to {@code end} in
+         * {@code source}. Keywords and operators are found through a perfect
+         * hash of their first, second and last characters and their length,
+         * which is collision free over the literals above (checked when the
+         * class is initialized), so a single comparison confirms it.
+         */
+        public static Kind of(Type type, CharSequence source, int start, int end) {
+            if ((type == Type.IDENTIFIER || type == Type.OPERATOR) && start < end) {
+                Kind kind = TABLE[hash(source, start, end)];
+                if (kind != null && kind._literal.length() == end - start) {
+                    for (int i = start; i < end; i++) {
+                        if (source.charAt(i) != kind._literal.charAt(i - start)) {
+                            return TYPES[type.ordinal()];
+                        }
+                    }
+                    return kind;
+                }
+            }
+            return TYPES[type.ordinal()];
+        }
+
+        private static int hash(CharSequence source, int start, int end) {
+            int length = end - start;
+            return (source.charAt(start) * 14 + source.charAt(length > 1 ? start + 1 : start) * 3 + source.charAt(end - 1) + length) & (TABLE_SIZE - 1);
+        }
+
+    }
+
     private final Type _type;
+    private final Kind _kind;
     private final String _literal;
     private final int _index;
 
     public Token(Type type, String literal, int index) {
         _type = type;
+        _kind = Kind.of(type, literal);
         _literal = literal;
         _index = index;
     }
@@ -25,6 +165,10 @@ public final class Token {
         return _type;
     }
 
+    public Kind getKind() {
+        return _kind;
+    }
+
     public String getLiteral() {
         return _literal;
     }
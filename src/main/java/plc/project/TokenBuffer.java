@@ -0,0 +1,144 @@
+package plc.project;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A compact store for the tokens of an in-memory source. Instead of one
+ * {@link Token} and one literal string per lexeme, it keeps parallel arrays
+ * of kinds, start offsets and lengths over the source, and materializes a
+ * literal only when it is asked for.
+ * <p>
+ * Identifiers are interned into a {@link SymbolTable} as they are added, and
+ * their literals are the canonical names of the table. Keywords and operators
+ * use the literal of their kind, so only literal values create strings.
+ * <p>
+ * As a {@code List<Token>} it creates a new token on every {@link #get(int)},
+ * so consumers which care about allocation, such as {@link ParserCompiler},
+ * should use the columnar accessors instead.
+ */
+public final class TokenBuffer extends AbstractList<Token> implements RandomAccess {
+
+    private static final Token.Kind[] KINDS = Token.Kind.values();
+
+    private final CharSequence _source;
+    private final SymbolTable _symbols;
+    private byte[] _kinds = new byte[64];
+    private int[] _starts = new int[64];
+    private int[] _lengths = new int[64];
+    private String[] _names = new String[64]; // the canonical name of an identifier, or null
+    private int _size = 0;
+
+    public TokenBuffer(CharSequence source) {
+        this(source, new SymbolTable());
+    }
+
+    public TokenBuffer(CharSequence source, SymbolTable symbols) {
+        _source = source;
+        _symbols = symbols;
+    }
+
+    public SymbolTable getSymbols() {
+        return _symbols;
+    }
+
+    /**
+     * Appends the token of the given type spanning {@code start} to
+     * {@code end} in the source.
+     */
+    void add(Token.Type type, int start, int end) {
+        if (_size == _kinds.length) {
+            _kinds = Arrays.copyOf(_kinds, _size * 2);
+            _starts = Arrays.copyOf(_starts, _size * 2);
+            _lengths = Arrays.copyOf(_lengths, _size * 2);
+            _names = Arrays.copyOf(_names, _size * 2);
+        }
+        Token.Kind kind = Token.Kind.of(type, _source, start, end);
+        _kinds[_size] = (byte) kind.ordinal();
+        _starts[_size] = start;
+        _lengths[_size] = end - start;
+        _names[_size] = kind == Token.Kind.IDENTIFIER ? _symbols.intern(_source, start, end) : null;
+        _size++;
+    }
+
+    /**
+     * Appends the tokens of another buffer over the same source, such as one
+     * lexed from a later chunk of it. Its names are interned into this
+     * buffer's table once each, and its identifiers given the canonical ones.
+     */
+    void append(TokenBuffer tokens) {
+        if (tokens._source != _source) {
+            throw new IllegalArgumentException("The tokens are from a different source.");
+        }
+        int size = _size + tokens._size;
+        if (size > _kinds.length) {
+            int capacity = Math.max(size, _kinds.length * 2);
+            _kinds = Arrays.copyOf(_kinds, capacity);
+            _starts = Arrays.copyOf(_starts, capacity);
+            _lengths = Arrays.copyOf(_lengths, capacity);
+            _names = Arrays.copyOf(_names, capacity);
+        }
+
+        // the other table's names are canonical there, so identity finds repeats
+        Map<String, String> names = new IdentityHashMap<>();
+        System.arraycopy(tokens._kinds, 0, _kinds, _size, tokens._size);
+        System.arraycopy(tokens._starts, 0, _starts, _size, tokens._size);
+        System.arraycopy(tokens._lengths, 0, _lengths, _size, tokens._size);
+        for (int i = 0; i < tokens._size; i++) {
+            String name = tokens._names[i];
+            _names[_size + i] = name == null ? null : names.computeIfAbsent(name, _symbols::intern);
+        }
+        _size = size;
+    }
+
+    public Token.Kind getKind(int index) {
+        return KINDS[_kinds[check(index)]];
+    }
+
+    public Token.Type getType(int index) {
+        return getKind(index).getType();
+    }
+
+    /**
+     * Returns the offset of the token in the source, as {@link Token#getIndex()}.
+     */
+    public int getIndex(int index) {
+        return _starts[check(index)];
+    }
+
+    public int getLength(int index) {
+        return _lengths[check(index)];
+    }
+
+    public String getLiteral(int index) {
+        Token.Kind kind = getKind(index);
+        if (kind == Token.Kind.IDENTIFIER) {
+            return _names[index];
+        } else if (kind.getLiteral() != null) {
+            return kind.getLiteral();
+        }
+        int start = _starts[index];
+        return _source.subSequence(start, start + _lengths[index]).toString();
+    }
+
+    @Override
+    public Token get(int index) {
+        return new Token(getType(index), getLiteral(index), getIndex(index));
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    private int check(int index) {
+        if (index < 0 || index >= _size) {
+            throw new IndexOutOfBoundsException("Token " + index + " is outside a buffer of " + _size + ".");
+        }
+        return index;
+    }
+
+}
@@ -0,0 +1,57 @@
+package plc.project;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The types known to a single compilation. The built-in types are shared by
+ * every registry, while any other type is created on its first lookup and
+ * returned by every later one, so each name maps to one {@link Environment.Type}
+ * per compilation. Created types join the lattice of the built-in ones with
+ * the next free id, below {@link Environment.Type#ANY}.
+ * <p>
+ * Lookups and registrations may happen concurrently, which allows the phases
+ * of one compilation to share a registry across threads.
+ */
+public final class TypeRegistry {
+
+    private final ConcurrentMap<String, Environment.Type> _types = new ConcurrentHashMap<>();
+    private final AtomicInteger _ids = new AtomicInteger(Environment.Type.BUILTINS);
+
+    public Environment.Type getType(String name) {
+        return getType(name, null);
+    }
+
+    /**
+     * Returns the type with the given name, creating it with the given scope
+     * if it is neither built in nor already known to this registry.
+     */
+    public Environment.Type getType(String name, Scope scope) {
+        Environment.Type builtin = Environment.getBuiltinType(name);
+        if (builtin != null) {
+            return builtin;
+        }
+        return _types.computeIfAbsent(name, n -> new Environment.Type(n, n, scope, this, _ids.getAndIncrement(), null, Environment.Type.ANY));
+    }
+
+    /**
+     * Returns the type of a struct, creating it with the struct's layout and
+     * the given scope unless its name is already known, in which case the
+     * existing type is kept so the values already given it stay assignable.
+     */
+    public Environment.Type getStructType(Shape shape, Scope scope) {
+        Environment.Type builtin = Environment.getBuiltinType(shape.getName());
+        if (builtin != null) {
+            return builtin;
+        }
+        return _types.computeIfAbsent(shape.getName(), n -> new Environment.Type(n, n, scope, this, _ids.getAndIncrement(), shape, Environment.Type.ANY));
+    }
+
+    public void registerType(Environment.Type type) {
+        if (Environment.getBuiltinType(type.getName()) != null || _types.putIfAbsent(type.getName(), type) != null) {
+            throw new IllegalArgumentException("Duplicate registration of type " + type.getName() + ".");
+        }
+    }
+
+}
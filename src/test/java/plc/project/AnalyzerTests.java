@@ -1,6 +1,8 @@
 package plc.project;
 
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -9,7 +11,10 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
@@ -20,6 +25,13 @@ import java.util.stream.Stream;
  */
 public final class AnalyzerTests {
 
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterAll
+    static void shutdown() {
+        POOL.shutdown();
+    }
+
     private static final Environment.Type OBJECT_TYPE = new Environment.Type("ObjectType", "ObjectType", init(new Scope(null), scope -> {
         scope.defineVariable("field", "field", Environment.Type.INTEGER, Environment.NIL);
         scope.defineFunction("method", "method", List.of(), Environment.Type.INTEGER, args -> Environment.NIL);
@@ -413,7 +425,139 @@ public final class AnalyzerTests {
                 Arguments.of("Character to Comparable", Environment.Type.COMPARABLE, Environment.Type.CHARACTER, true),
                 Arguments.of("String to Comparable", Environment.Type.COMPARABLE, Environment.Type.STRING, true),
                 Arguments.of("Integer to Any", Environment.Type.ANY, Environment.Type.INTEGER, true),
-                Arguments.of("Any to Integer", Environment.Type.INTEGER, Environment.Type.ANY, false)
+                Arguments.of("Any to Integer", Environment.Type.INTEGER, Environment.Type.ANY, false),
+                Arguments.of("Comparable to Comparable", Environment.Type.COMPARABLE, Environment.Type.COMPARABLE, true),
+                Arguments.of("Boolean to Comparable", Environment.Type.COMPARABLE, Environment.Type.BOOLEAN, false),
+                Arguments.of("Nil to Any", Environment.Type.ANY, Environment.Type.NIL, true)
+        );
+    }
+
+    @Test
+    public void testTypeRegistry() {
+        TypeRegistry first = new TypeRegistry();
+        TypeRegistry second = new TypeRegistry();
+        Assertions.assertSame(Environment.Type.INTEGER, first.getType("Integer"));
+        Assertions.assertSame(first.getType("Point"), first.getType("Point"));
+        Assertions.assertNotSame(first.getType("Point"), second.getType("Point"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> first.registerType(Environment.Type.STRING));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> first.registerType(new Environment.Type("Point", "Point", null)));
+    }
+
+    @Test
+    public void testTypeLattice() {
+        TypeRegistry types = new TypeRegistry();
+        Environment.Type point = types.getType("Point");
+        Environment.Type line = types.getType("Line");
+        Assertions.assertNotEquals(point.getId(), line.getId());
+        Assertions.assertTrue(point.isSubtypeOf(point));
+        Assertions.assertTrue(point.isSubtypeOf(Environment.Type.ANY));
+        Assertions.assertFalse(point.isSubtypeOf(line));
+        Assertions.assertFalse(point.isSubtypeOf(Environment.Type.COMPARABLE));
+        Assertions.assertFalse(Environment.Type.ANY.isSubtypeOf(point));
+        Assertions.assertTrue(Environment.Type.STRING.isSubtypeOf(Environment.Type.COMPARABLE));
+        Assertions.assertTrue(OBJECT_TYPE.isSubtypeOf(Environment.Type.ANY));
+        Assertions.assertFalse(OBJECT_TYPE.isSubtypeOf(point));
+
+        TypeRegistry other = new TypeRegistry();
+        Environment.Type circle = other.getType("Circle");
+        Assertions.assertEquals(point.getId(), circle.getId());
+        Assertions.assertFalse(point.isSubtypeOf(circle));
+        Assertions.assertFalse(circle.isSubtypeOf(point));
+        Assertions.assertTrue(circle.isSubtypeOf(Environment.Type.ANY));
+        Assertions.assertFalse(Environment.Type.ANY.isSubtypeOf(circle));
+    }
+
+    @Test
+    public void testStructType() throws ParseException {
+        Ast.Source ast = new ParserCompiler(new Lexer("DEF TYPE Point:\n    LET x: Integer\n    LET y: Integer\nEND\n"
+                + "DEF main(): Integer DO\n    LET p: Point\n    RETURN p.y\nEND\n").lex()).parseSource();
+        TypeRegistry types = new TypeRegistry();
+        new Analyzer(null, types).visit(ast);
+        Shape shape = ast.getStructs().get(0).getShape();
+        Assertions.assertSame(shape, types.getType("Point").getShape());
+
+        Ast.Expr.Access access = (Ast.Expr.Access) ((Ast.Stmt.Return) ast.getMethods().get(0).getStatements().get(1)).getValue();
+        Assertions.assertSame(shape, access.getShape());
+        Assertions.assertEquals(1, access.getField());
+    }
+
+    @Test
+    public void testScopeStack() {
+        Scope base = new Scope(null);
+        ScopeStack symbols = new ScopeStack(base);
+        Environment.Variable global = symbols.defineVariable("x", "x", Environment.Type.INTEGER, Environment.NIL);
+        Assertions.assertSame(global, base.lookupVariable("x"));
+
+        symbols.enter();
+        Environment.Variable local = symbols.defineVariable("x", "x", Environment.Type.STRING, Environment.NIL);
+        Environment.Function function = symbols.defineFunction("f", "f", List.of(), Environment.Type.NIL, args -> Environment.NIL);
+        Assertions.assertThrows(RuntimeException.class, () -> symbols.defineVariable("x", "x", Environment.Type.STRING, Environment.NIL));
+        symbols.enter();
+        Environment.Variable shadow = symbols.defineVariable("x", "x", Environment.Type.DECIMAL, Environment.NIL);
+        Assertions.assertSame(shadow, symbols.lookupVariable("x"));
+        Assertions.assertSame(function, symbols.lookupFunction("f", 0));
+        Assertions.assertThrows(RuntimeException.class, () -> symbols.lookupFunction("f", 1));
+
+        symbols.exit();
+        Assertions.assertSame(local, symbols.lookupVariable("x"));
+        symbols.exit();
+        Assertions.assertSame(global, symbols.lookupVariable("x"));
+        Assertions.assertThrows(RuntimeException.class, () -> symbols.lookupFunction("f", 0));
+        Assertions.assertThrows(IllegalStateException.class, symbols::exit);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testParallelSource(String test, String input) throws ParseException {
+        Ast.Source expected = new ParserCompiler(new Lexer(input).lex()).parseSource();
+        Ast.Source ast = new ParserCompiler(new Lexer(input).lex()).parseSource();
+        RuntimeException error = null;
+        try {
+            new Analyzer(null).visit(expected);
+        } catch (RuntimeException e) {
+            error = e;
+        }
+        if (error == null) {
+            new Analyzer(null).visit(ast, POOL);
+            Assertions.assertEquals(expected, ast);
+        } else {
+            RuntimeException exception = Assertions.assertThrows(RuntimeException.class, () -> new Analyzer(null).visit(ast, POOL));
+            Assertions.assertEquals(error.getMessage(), exception.getMessage());
+        }
+    }
+
+    private static Stream<Arguments> testParallelSource() {
+        String methods = "DEF square(x: Integer): Integer DO\n"
+                + "    LET y: Integer = x * x\n"
+                + "    RETURN y\n"
+                + "END\n"
+                + "DEF sum(n: Integer): Integer DO\n"
+                + "    LET total = 0\n"
+                + "    WHILE n > 0 DO\n        total = total + square(n)\n        n = n - 1\n    END\n"
+                + "    RETURN total\n"
+                + "END\n";
+        // many methods, so the pool gets far more bodies than threads
+        String first = IntStream.range(0, 150).mapToObj(i -> methods.replace("square", "square" + i).replace("sum(", "sum" + i + "("))
+                .collect(Collectors.joining());
+        String second = IntStream.range(150, 300).mapToObj(i -> methods.replace("square", "square" + i).replace("sum(", "sum" + i + "("))
+                .collect(Collectors.joining());
+        String main = "DEF main(): Integer DO\n    print(sum0(3))\n    RETURN 0\nEND\n";
+        return Stream.of(
+                Arguments.of("Methods", "LET limit: Integer = 10\n" + methods
+                        + "DEF main(): Integer DO\n    print(sum(limit))\n    RETURN 0\nEND\n"),
+                Arguments.of("Shadowed Field", "LET y: Decimal = 1.0\n" + methods
+                        + "DEF main(): Integer DO\n    print(y)\n    RETURN 0\nEND\n"),
+                Arguments.of("Forward Call", "DEF main(): Integer DO\n    print(sum(3))\n    RETURN 0\nEND\n" + methods),
+                Arguments.of("Type Error", methods + "DEF main(): Integer DO\n    RETURN square(1.0)\nEND\n"),
+                Arguments.of("Missing Main", methods),
+                Arguments.of("Global Clash", methods + "DEF print(x: Integer) DO\nEND\n" + methods.replace("s", "t")
+                        + "DEF main(): Integer DO\n    RETURN 0\nEND\n"),
+                Arguments.of("Many Methods", "LET limit: Integer = 10\n" + first + second + main),
+                Arguments.of("Many Methods, Forward Call", first + "DEF early(): Integer DO\n    RETURN late(1)\nEND\n" + second
+                        + "DEF late(x: Integer): Integer DO\n    RETURN x\nEND\n" + main),
+                Arguments.of("Many Methods, Type Error", first + second + "DEF main(): Integer DO\n    RETURN square299(1.0)\nEND\n"),
+                Arguments.of("Many Methods, Global Clash", first + "DEF print(x: Integer) DO\nEND\n" + second + main),
+                Arguments.of("Many Methods, Missing Main", first + second)
         );
     }
 
@@ -0,0 +1,136 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+final class BatchCompilerTests {
+
+    private static final String PROGRAM = "DEF main(): Integer DO\n    RETURN 0\nEND\n";
+
+    @TempDir
+    Path _dir;
+
+    @Test
+    void testExpandDirectory() throws IOException {
+        write("src/a.plc", PROGRAM);
+        write("src/nested/b.plc", PROGRAM);
+        write("src/notes.txt", "");
+        Assertions.assertEquals(List.of(Path.of("a"), Path.of("nested/b")),
+                outputNames(BatchCompiler.expand(List.of(_dir.resolve("src").toString()))));
+    }
+
+    @Test
+    void testExpandGlob() throws IOException {
+        write("src/a.plc", PROGRAM);
+        write("src/b.txt", PROGRAM);
+        write("src/nested/c.plc", PROGRAM);
+        Assertions.assertEquals(List.of(Path.of("a")),
+                outputNames(BatchCompiler.expand(List.of(_dir.resolve("src") + "/*.plc"))));
+        Assertions.assertEquals(List.of(Path.of("nested/c")),
+                outputNames(BatchCompiler.expand(List.of(_dir.resolve("src") + "/*/*.plc"))));
+    }
+
+    @Test
+    void testExpandFile() throws IOException {
+        write("src/a.plc", PROGRAM);
+        List<BatchCompiler.Source> sources = BatchCompiler.expand(List.of(_dir.resolve("src/a.plc").toString()));
+        Assertions.assertEquals(List.of(Path.of("a")), outputNames(sources));
+        Assertions.assertEquals(_dir.resolve("src/a.plc"), sources.get(0).getPath());
+    }
+
+    @Test
+    void testIsMultiple() throws IOException {
+        write("src/a.plc", PROGRAM);
+        Assertions.assertTrue(BatchCompiler.isMultiple(_dir.resolve("src").toString()));
+        Assertions.assertTrue(BatchCompiler.isMultiple(_dir.resolve("src") + "/*.plc"));
+        Assertions.assertFalse(BatchCompiler.isMultiple(_dir.resolve("src/a.plc").toString()));
+        Assertions.assertFalse(BatchCompiler.isMultiple(_dir.resolve("missing.plc").toString()));
+    }
+
+    @Test
+    void testOutputName() {
+        Assertions.assertEquals(Path.of("a/b"), new BatchCompiler.Source(Path.of("dir/a/b.plc"), Path.of("a/b.plc")).getOutputName());
+        Assertions.assertEquals(Path.of("b"), new BatchCompiler.Source(Path.of("b"), Path.of("b")).getOutputName());
+        Assertions.assertEquals(Path.of(".b"), new BatchCompiler.Source(Path.of(".b"), Path.of(".b")).getOutputName());
+    }
+
+    @Test
+    void testCompile() throws IOException, InterruptedException {
+        write("src/good.plc", PROGRAM);
+        write("src/bad.plc", "DEF main(): Integer DO\n    RETURN\nEND\n");
+        write("src/missing.plc", "DEF f() DO\nEND\n");
+        BatchCompiler.Report report = compile(List.of(_dir.resolve("src").toString()));
+
+        Assertions.assertEquals(3, report.getFiles());
+        Assertions.assertTrue(Files.isRegularFile(_dir.resolve("out/good/Main.java")));
+        List<BatchCompiler.Diagnostic> diagnostics = report.getDiagnostics();
+        Assertions.assertEquals(2, diagnostics.size());
+        BatchCompiler.Diagnostic bad = find(diagnostics, "bad.plc");
+        Assertions.assertTrue(bad.getIndex() >= 0);
+        BatchCompiler.Diagnostic missing = find(diagnostics, "missing.plc");
+        Assertions.assertEquals("main() is not defined.", missing.getMessage());
+        Assertions.assertEquals(-1, missing.getIndex());
+    }
+
+    @Test
+    void testCompileCollision() throws IOException, InterruptedException {
+        write("a/x.plc", "DEF main(): Integer DO\n    RETURN 1\nEND\n");
+        write("b/x.plc", "DEF main(): Integer DO\n    RETURN 2\nEND\n");
+        BatchCompiler.Report report = compile(List.of(_dir.resolve("a/x.plc").toString(), _dir.resolve("b/x.plc").toString()));
+
+        Assertions.assertEquals(2, report.getFiles());
+        Assertions.assertEquals(1, report.getDiagnostics().size());
+        Assertions.assertEquals(_dir.resolve("b/x.plc"), report.getDiagnostics().get(0).getSource());
+        Assertions.assertTrue(Files.readString(_dir.resolve("out/x/Main.java")).contains("return 1;"));
+    }
+
+    @Test
+    void testCompileParallel() throws IOException, InterruptedException {
+        write("src/a.plc", "DEF f(x: Integer): Integer DO\n    RETURN x * 2\nEND\n" + PROGRAM);
+        compile(List.of(_dir.resolve("src").toString()));
+        String expected = Files.readString(_dir.resolve("out/a/Main.java"));
+        BatchCompiler.Report report = compile(List.of(_dir.resolve("src").toString()), "parallel");
+
+        Assertions.assertTrue(report.getDiagnostics().isEmpty());
+        Assertions.assertEquals(expected, Files.readString(_dir.resolve("out/a/Main.java")));
+    }
+
+    private BatchCompiler.Report compile(List<String> inputs) throws IOException, InterruptedException {
+        return compile(inputs, "sequential");
+    }
+
+    private BatchCompiler.Report compile(List<String> inputs, String mode) throws IOException, InterruptedException {
+        ExecutorService executor = BatchCompiler.executor("platform", 2);
+        try {
+            return new BatchCompiler("regex", mode, mode, "source", _dir.resolve("out")).compile(BatchCompiler.expand(inputs), executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void write(String path, String content) throws IOException {
+        Path file = _dir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    private static List<Path> outputNames(List<BatchCompiler.Source> sources) {
+        return sources.stream().map(BatchCompiler.Source::getOutputName).collect(Collectors.toList());
+    }
+
+    private static BatchCompiler.Diagnostic find(List<BatchCompiler.Diagnostic> diagnostics, String name) {
+        return diagnostics.stream()
+                .filter(diagnostic -> diagnostic.getSource().getFileName().toString().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+}
@@ -5,8 +5,11 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Arrays;
@@ -664,6 +667,58 @@ public class GeneratorTests {
         );
     }
 
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testBytecode(String test, String input, Object expected, String output) throws Exception {
+        Ast.Source ast = new ParserCompiler(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        Class<?> main = BytecodeGenerator.load(ast);
+        Method method = main.getDeclaredMethod("main");
+        method.setAccessible(true);
+
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(buffer));
+            Assertions.assertEquals(expected, method.invoke(main.getDeclaredConstructor().newInstance()));
+        } finally {
+            System.setOut(stdout);
+        }
+        Assertions.assertEquals(output, buffer.toString().replace(System.lineSeparator(), "\n"));
+    }
+
+    private static Stream<Arguments> testBytecode() {
+        return Stream.of(
+                Arguments.of("Hello, World!",
+                        "DEF main(): Integer DO print(\"Hello, World!\") RETURN 0 END",
+                        0, "Hello, World!\n"
+                ),
+                Arguments.of("Fields",
+                        "LET x: Integer = 2 LET r: Decimal = 1.5 " +
+                        "DEF main(): Integer DO x = x * 3 print(r * 2.0) RETURN x END",
+                        6, "3.0\n"
+                ),
+                Arguments.of("Loop",
+                        "DEF main(): Integer DO LET i = 0 LET s = \"\" " +
+                        "WHILE i < 3 DO s = s + i i = i + 1 END print(s) RETURN i END",
+                        3, "012\n"
+                ),
+                Arguments.of("Calls",
+                        "DEF fib(n: Integer): Integer DO IF n < 2 DO RETURN n END RETURN fib(n - 1) + fib(n - 2) END " +
+                        "DEF main(): Integer DO print(fib(10) == 55) RETURN fib(15) END",
+                        610, "true\n"
+                ),
+                Arguments.of("Comparisons",
+                        "DEF main(): Integer DO print(\"a\" < \"b\") print('c' >= 'd') print(\"x\" != \"x\") RETURN 0 END",
+                        0, "true\nfalse\nfalse\n"
+                ),
+                Arguments.of("Comparable Receiver",
+                        "DEF main(): Integer DO LET c: Comparable = 3 print(c.stringify()) RETURN 0 END",
+                        0, "3\n"
+                )
+        );
+    }
+
     /**
      * Helper function for tests, using a StringWriter as the output stream.
      */
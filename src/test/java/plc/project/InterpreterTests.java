@@ -25,6 +25,18 @@ final class InterpreterTests {
         test(ast, expected, new Scope(null));
     }
 
+    @ParameterizedTest
+    @MethodSource("testSource")
+    void testClosureCompiler(String test, Ast.Source ast, Object expected) {
+        ClosureCompiler.Program program = ClosureCompiler.compile(ast);
+        if (expected != null) {
+            Assertions.assertEquals(expected, program.execute(new Scope(null)).getValue());
+            Assertions.assertEquals(expected, program.execute(new Scope(null)).getValue());
+        } else {
+            Assertions.assertThrows(RuntimeException.class, () -> program.execute(new Scope(null)));
+        }
+    }
+
     private static Stream<Arguments> testSource() {
         return Stream.of(
                 Arguments.of("Method Scope", new Ast.Source(
@@ -69,7 +81,76 @@ final class InterpreterTests {
                                         new Ast.Expr.Access(Optional.empty(), "x"),
                                         new Ast.Expr.Access(Optional.empty(), "y")))
                         ), null)), null
-                ), Environment.NIL.getValue())
+                ), Environment.NIL.getValue()),
+
+                Arguments.of("Block Shadowing", new Ast.Source(
+                        List.of(),
+                        List.of(new Ast.Method("main", List.of(), Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(new Ast.Expr.Literal(BigInteger.ONE))),
+                                new Ast.Stmt.If(new Ast.Expr.Literal(true), Arrays.asList(
+                                        new Ast.Stmt.Declaration("x", Optional.of(new Ast.Expr.Access(Optional.empty(), "x"))),
+                                        new Ast.Stmt.Assignment(new Ast.Expr.Access(Optional.empty(), "x"), new Ast.Expr.Literal(BigInteger.TEN))
+                                ), List.of()),
+                                new Ast.Stmt.Return(new Ast.Expr.Access(Optional.empty(), "x"))
+                        ), null)), null
+                ), BigInteger.ONE),
+
+                Arguments.of("Return From Loop", new Ast.Source(
+                        List.of(),
+                        List.of(new Ast.Method("main", List.of(), Arrays.asList(
+                                new Ast.Stmt.Declaration("i", Optional.of(new Ast.Expr.Literal(BigInteger.ZERO))),
+                                new Ast.Stmt.While(new Ast.Expr.Literal(true), Arrays.asList(
+                                        new Ast.Stmt.Assignment(new Ast.Expr.Access(Optional.empty(), "i"), new Ast.Expr.Binary("+",
+                                                new Ast.Expr.Access(Optional.empty(), "i"),
+                                                new Ast.Expr.Literal(BigInteger.ONE))),
+                                        new Ast.Stmt.If(new Ast.Expr.Binary("==", new Ast.Expr.Access(Optional.empty(), "i"), new Ast.Expr.Literal(BigInteger.TEN)),
+                                                List.of(new Ast.Stmt.Return(new Ast.Expr.Access(Optional.empty(), "i"))),
+                                                List.of())
+                                )),
+                                new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ZERO))
+                        ), null)), null
+                ), BigInteger.TEN),
+
+                Arguments.of("Redefined Variable", new Ast.Source(
+                        List.of(),
+                        List.of(new Ast.Method("main", List.of(), Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.of(new Ast.Expr.Literal(BigInteger.ONE))),
+                                new Ast.Stmt.Declaration("x", Optional.of(new Ast.Expr.Literal(BigInteger.TEN))),
+                                new Ast.Stmt.Return(new Ast.Expr.Access(Optional.empty(), "x"))
+                        ), null)), null
+                ), null),
+
+                // DEF TYPE Point: LET x = 1 LET y = 2 DEF sum() DO RETURN x + y END END
+                // DEF main() DO LET p: Point p.x = 5 RETURN p.sum() END
+                Arguments.of("Struct", new Ast.Source(
+                        List.of(),
+                        List.of(new Ast.Method("main", List.of(), Arrays.asList(
+                                new Ast.Stmt.Declaration("p", Optional.of("Point"), Optional.empty()),
+                                new Ast.Stmt.Assignment(
+                                        new Ast.Expr.Access(Optional.of(new Ast.Expr.Access(Optional.empty(), "p")), "x"),
+                                        new Ast.Expr.Literal(BigInteger.valueOf(5))),
+                                new Ast.Stmt.Return(new Ast.Expr.Function(Optional.of(new Ast.Expr.Access(Optional.empty(), "p")), "sum", List.of()))
+                        ), null)),
+                        List.of(new Ast.Struct("Point", Arrays.asList(
+                                new Ast.Field("x", Optional.of(new Ast.Expr.Literal(BigInteger.ONE))),
+                                new Ast.Field("y", Optional.of(new Ast.Expr.Literal(BigInteger.valueOf(2))))
+                        ), List.of(new Ast.Method("sum", List.of(), List.of(
+                                new Ast.Stmt.Return(new Ast.Expr.Binary("+",
+                                        new Ast.Expr.Access(Optional.empty(), "x"),
+                                        new Ast.Expr.Access(Optional.empty(), "y")))
+                        ), List.of()))))
+                ), BigInteger.valueOf(7)),
+
+                Arguments.of("Redefined Struct", new Ast.Source(
+                        List.of(),
+                        List.of(new Ast.Method("main", List.of(), List.of(
+                                new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ZERO))), null
+                        )),
+                        List.of(
+                                new Ast.Struct("Point", List.of(), List.of()),
+                                new Ast.Struct("Point", List.of(), List.of())
+                        )
+                ), null)
         );
     }
 
@@ -341,6 +422,34 @@ final class InterpreterTests {
                                 new Ast.Expr.Literal(new BigDecimal("3.4"))
                         ),
                         new BigDecimal("0.4")
+                ),
+                Arguments.of("Addition Overflow",
+                        new Ast.Expr.Binary("+",
+                                new Ast.Expr.Literal(BigInteger.valueOf(Long.MAX_VALUE)),
+                                new Ast.Expr.Literal(BigInteger.ONE)
+                        ),
+                        BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE)
+                ),
+                Arguments.of("Multiplication Overflow",
+                        new Ast.Expr.Binary("*",
+                                new Ast.Expr.Literal(BigInteger.valueOf(Long.MIN_VALUE)),
+                                new Ast.Expr.Literal(BigInteger.valueOf(-1))
+                        ),
+                        BigInteger.valueOf(Long.MIN_VALUE).negate()
+                ),
+                Arguments.of("Integer Division",
+                        new Ast.Expr.Binary("/",
+                                new Ast.Expr.Literal(BigInteger.valueOf(-7)),
+                                new Ast.Expr.Literal(BigInteger.TWO)
+                        ),
+                        BigInteger.valueOf(-3)
+                ),
+                Arguments.of("Division By Zero",
+                        new Ast.Expr.Binary("/",
+                                new Ast.Expr.Literal(BigInteger.ONE),
+                                new Ast.Expr.Literal(BigInteger.ZERO)
+                        ),
+                        null
                 )
         );
     }
@@ -389,6 +498,106 @@ final class InterpreterTests {
         Assertions.assertEquals(BigInteger.TEN, scope.lookupVariable("num").getValue().getValue());
     }
 
+    @Test
+    void testCreate() {
+        Assertions.assertSame(Environment.TRUE, Environment.create(true));
+        Assertions.assertSame(Environment.FALSE, Environment.create(Boolean.FALSE));
+        Assertions.assertSame(Environment.create(7), Environment.create(BigInteger.valueOf(7)));
+        Assertions.assertEquals(BigInteger.valueOf(-128), Environment.create(-128).getValue());
+        Assertions.assertNotSame(Environment.create(1L << 40), Environment.create(1L << 40));
+        Assertions.assertEquals(BigInteger.ONE.shiftLeft(40), Environment.create(1L << 40).getValue());
+
+        Environment.PlcObject string = Environment.create("string");
+        Assertions.assertEquals("Unknown", string.getType().getName());
+        Assertions.assertSame(string.getType(), string.getType());
+        Assertions.assertThrows(RuntimeException.class, () -> string.getField("length"));
+    }
+
+    @Test
+    void testCallSite() {
+        Scope scope = new Scope(null);
+        scope.defineFunction("function", 0, args -> Environment.create("outer"));
+        Interpreter interpreter = new Interpreter(scope);
+        Ast.Expr.Function ast = new Ast.Expr.Function(Optional.empty(), "function", List.of());
+
+        Assertions.assertEquals("outer", interpreter.visit(ast).getValue());
+        Scope.CallSite site = ast.getCallSite();
+        Assertions.assertEquals("outer", interpreter.visit(ast).getValue());
+        Assertions.assertSame(site, ast.getCallSite());
+        Assertions.assertSame(site, new Scope(new Scope(interpreter.getScope())).lookupFunction("function", 0, site));
+        new Scope(null).defineFunction("function", 0, args -> Environment.create("unrelated"));
+        Assertions.assertSame(site, interpreter.getScope().lookupFunction("function", 0, site));
+
+        interpreter.getScope().defineFunction("function", 0, args -> Environment.create("inner"));
+        Assertions.assertEquals("inner", interpreter.visit(ast).getValue());
+        Assertions.assertNotSame(site, ast.getCallSite());
+        Assertions.assertEquals("outer", new Interpreter(scope).visit(ast).getValue());
+    }
+
+    @Test
+    void testCallMethod() {
+        Scope parent = new Scope(null);
+        parent.defineFunction("method", 1, args -> Environment.create(args.get(0).getValue() + "." + args.get(1).getValue()));
+        Scope scope = new Scope(parent);
+        Environment.PlcObject object = new Environment.PlcObject(scope, "object");
+        List<Environment.PlcObject> arguments = List.of(Environment.create("argument"));
+
+        Assertions.assertEquals("object.argument", object.callMethod("method", arguments).getValue());
+        Assertions.assertEquals(1, arguments.size());
+        Assertions.assertThrows(RuntimeException.class, () -> object.callMethod("method", List.of()));
+
+        int generation = scope.getGeneration();
+        new Scope(null).defineFunction("method", 1, args -> Environment.create("unrelated"));
+        Assertions.assertEquals(generation, scope.getGeneration());
+        Assertions.assertSame(object.getType().getMethod("method", 1), object.getType().getMethod("method", 1));
+
+        scope.defineFunction("method", 1, args -> Environment.create("overridden"));
+        Assertions.assertEquals("overridden", object.callMethod("method", arguments).getValue());
+    }
+
+    @Test
+    void testStruct() {
+        // DEF TYPE Point: LET x = 1 LET y = x + 1 DEF sum() DO RETURN x + y END END
+        Ast.Struct point = new Ast.Struct("Point", List.of(
+                new Ast.Field("x", Optional.of(new Ast.Expr.Literal(BigInteger.ONE))),
+                new Ast.Field("y", Optional.of(new Ast.Expr.Binary("+",
+                        new Ast.Expr.Access(Optional.empty(), "x"),
+                        new Ast.Expr.Literal(BigInteger.ONE))))
+        ), List.of(
+                new Ast.Method("sum", List.of(), List.of(
+                        new Ast.Stmt.Return(new Ast.Expr.Binary("+",
+                                new Ast.Expr.Access(Optional.empty(), "x"),
+                                new Ast.Expr.Access(Optional.empty(), "y")))
+                ), List.of())
+        ));
+        // LET p: Point LET q: Point p.x = 5 RETURN p.sum() * 10 + q.x
+        Ast.Expr.Access field = new Ast.Expr.Access(Optional.of(new Ast.Expr.Access(Optional.empty(), "q")), "x");
+        Ast.Source source = new Ast.Source(List.of(), List.of(
+                new Ast.Method("main", List.of(), List.of(
+                        new Ast.Stmt.Declaration("p", Optional.of("Point"), Optional.empty()),
+                        new Ast.Stmt.Declaration("q", Optional.of("Point"), Optional.empty()),
+                        new Ast.Stmt.Assignment(
+                                new Ast.Expr.Access(Optional.of(new Ast.Expr.Access(Optional.empty(), "p")), "x"),
+                                new Ast.Expr.Literal(BigInteger.valueOf(5))),
+                        new Ast.Stmt.Return(new Ast.Expr.Binary("+",
+                                new Ast.Expr.Binary("*",
+                                        new Ast.Expr.Function(Optional.of(new Ast.Expr.Access(Optional.empty(), "p")), "sum", List.of()),
+                                        new Ast.Expr.Literal(BigInteger.TEN)),
+                                field))
+                ), List.of())
+        ), List.of(point));
+
+        test(source, BigInteger.valueOf(71), new Scope(null));
+        Assertions.assertSame(point.getShape(), field.getShape());
+        Assertions.assertEquals(0, field.getField());
+
+        Ast.Struct duplicate = new Ast.Struct("Point", List.of(
+                new Ast.Field("x", Optional.empty()),
+                new Ast.Field("x", Optional.empty())
+        ), List.of());
+        test(duplicate, null, new Scope(null));
+    }
+
     @ParameterizedTest
     @MethodSource
     void testFunctionExpression(String test, Ast ast, Object expected) {
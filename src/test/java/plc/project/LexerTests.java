@@ -1,17 +1,32 @@
 package plc.project;
 
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 public class LexerTests {
 
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterAll
+    static void shutdown() {
+        POOL.shutdown();
+    }
+
     @ParameterizedTest
     @MethodSource
     void testIdentifier(String test, String input, boolean success) {
@@ -166,6 +181,48 @@ public class LexerTests {
         test(input, List.of(new Token(Token.Type.OPERATOR, input, 0)), success);
     }
 
+    @ParameterizedTest
+    @MethodSource
+    void testKind(String test, String input, Token.Kind expected) {
+        Assertions.assertEquals(expected, new Lexer(input).lexToken().getKind());
+        Assertions.assertEquals(expected, new DfaLexer(input).lexToken().getKind());
+    }
+
+    private static Stream<Arguments> testKind() {
+        return Stream.of(
+                Arguments.of("Keyword", "WHILE", Token.Kind.WHILE),
+                Arguments.of("Lowercase Keyword", "while", Token.Kind.IDENTIFIER),
+                Arguments.of("Keyword Prefix", "LETTER", Token.Kind.IDENTIFIER),
+                Arguments.of("Operator", "<=", Token.Kind.LESS_EQUAL),
+                Arguments.of("Unknown Operator", ";", Token.Kind.OPERATOR),
+                Arguments.of("Integer", "1", Token.Kind.INTEGER),
+                Arguments.of("String", "\"IF\"", Token.Kind.STRING)
+        );
+    }
+
+    @Test
+    void testTokenBuffer() {
+        TokenBuffer tokens = (TokenBuffer) new DfaLexer("LET name = \"value\"").lex();
+        Assertions.assertEquals(4, tokens.size());
+        Assertions.assertEquals(Token.Kind.LET, tokens.getKind(0));
+        Assertions.assertEquals(Token.Type.IDENTIFIER, tokens.getType(1));
+        Assertions.assertEquals("name", tokens.getLiteral(1));
+        Assertions.assertEquals(11, tokens.getIndex(3));
+        Assertions.assertEquals(7, tokens.getLength(3));
+        Assertions.assertEquals(new Token(Token.Type.OPERATOR, "=", 9), tokens.get(2));
+    }
+
+    @Test
+    void testSymbolTable() {
+        TokenBuffer tokens = (TokenBuffer) new Lexer("x = y + x LET").lex();
+        Assertions.assertSame(tokens.getLiteral(0), tokens.getLiteral(4));
+        Assertions.assertNotSame(tokens.getLiteral(0), tokens.getLiteral(2));
+        Assertions.assertEquals(1, tokens.getLength(4));
+        Assertions.assertEquals("LET", tokens.getLiteral(5));
+        Assertions.assertEquals(2, tokens.getSymbols().size());
+        Assertions.assertSame(tokens.getLiteral(2), tokens.getSymbols().intern("y"));
+    }
+
     @Test
     void testException() {
         ParseException exception = Assertions.assertThrows(ParseException.class,
@@ -177,6 +234,106 @@ public class LexerTests {
         Assertions.assertEquals(9, exception.getIndex());
     }
 
+    @ParameterizedTest
+    @MethodSource
+    void testDfaLexer(String test, String input) {
+        List<Token> expected;
+        try {
+            expected = new Lexer(input).lex();
+        } catch (ParseException e) {
+            ParseException exception = Assertions.assertThrows(ParseException.class, () -> new DfaLexer(input).lex());
+            Assertions.assertEquals(e.getMessage(), exception.getMessage());
+            Assertions.assertEquals(e.getIndex(), exception.getIndex());
+            return;
+        }
+        Assertions.assertEquals(expected, new DfaLexer(input).lex());
+    }
+
+    @ParameterizedTest
+    @MethodSource("testDfaLexer")
+    void testDfaLexerReader(String test, String input) {
+        try {
+            List<Token> expected = new Lexer(input).lex();
+            Assertions.assertEquals(expected, new DfaLexer(new StringReader(input)).lex());
+        } catch (ParseException e) {
+            ParseException exception = Assertions.assertThrows(ParseException.class, () -> new DfaLexer(new StringReader(input)).lex());
+            Assertions.assertEquals(e.getIndex(), exception.getIndex());
+        }
+    }
+
+    @Test
+    void testDfaLexerLongToken() {
+        String input = "x = \"" + "a".repeat(20000) + "\" y";
+        Assertions.assertEquals(new Lexer(input).lex(), new DfaLexer(new StringReader(input)).lex());
+    }
+
+    @Test
+    void testDfaLexerSurrogateAtBufferEnd(@TempDir Path dir) throws IOException {
+        // U+1F600 starts on the last char of the first 8192 char read
+        String prefix = "LET x = 1 !!! ";
+        String input = prefix + "a".repeat(8191 - prefix.length()) + "\uD83D\uDE00\nLET y = 2";
+        List<Token> expected = new Lexer(input).lex();
+        Path file = dir.resolve("input.plc");
+        Files.writeString(file, input);
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            Assertions.assertEquals(expected, new DfaLexer(new StringReader(input)).lex());
+            Assertions.assertEquals(expected, DfaLexer.map(file).lex());
+        });
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testDfaLexerParallel(String test, String input) {
+        try {
+            List<Token> expected = new DfaLexer(input).lex();
+            Assertions.assertEquals(expected, new DfaLexer(input).lex(POOL));
+        } catch (ParseException e) {
+            ParseException exception = Assertions.assertThrows(ParseException.class, () -> new DfaLexer(input).lex(POOL));
+            Assertions.assertEquals(e.getMessage(), exception.getMessage());
+            Assertions.assertEquals(e.getIndex(), exception.getIndex());
+        }
+    }
+
+    private static Stream<Arguments> testDfaLexerParallel() {
+        // inputs of 64K chars or more are split into chunks at line feeds
+        String line = "LET x = 'c' !!! comment\n    print(\"a\\\"b\", -1.5 <= y)\n\n";
+        String lines = line.repeat(5000);
+        String smallest = line.repeat(65536 / line.length()) + "x".repeat(65536 % line.length());
+        return Stream.of(
+                Arguments.of("Lines", lines),
+                Arguments.of("Single Line", lines.replace('\n', ' ')),
+                Arguments.of("Smallest Split", smallest),
+                Arguments.of("Largest Unsplit", smallest.substring(1)),
+                Arguments.of("Long Comment", lines + "!!! " + "\"'".repeat(60000) + "\n" + lines),
+                Arguments.of("Long String", lines + "\"" + "!!! ".repeat(30000) + "\"\n" + lines),
+                Arguments.of("Carriage Returns", lines.replace("\n", "\r\n")),
+                Arguments.of("Unterminated String", lines + "\"abc\n" + lines),
+                Arguments.of("Unterminated Long String", lines + "\"" + "a".repeat(100000) + "\n" + lines),
+                Arguments.of("Two Errors", lines + "'ab'\n" + lines + "\"\\q\"\n" + lines)
+        );
+    }
+
+    private static Stream<Arguments> testDfaLexer() {
+        return Stream.of(
+                Arguments.of("Declaration", "LET x = 5 !!! hello comment"),
+                Arguments.of("Call", "print(\"Hello, World!\")"),
+                Arguments.of("Operators", "a<=b != c==d >e !!x"),
+                Arguments.of("Numbers", "1.2.3 -4 +5.0 1. 6-7 - a"),
+                Arguments.of("Identifiers", "a-b _c1 bnrt"),
+                Arguments.of("Characters", "'c' '\\'' '\\n' '\\\\'"),
+                Arguments.of("Comments", "!!! one\nx !!!two"),
+                Arguments.of("Unterminated String", "\"unterminated"),
+                Arguments.of("Invalid String Escape", "\"invalid\\escape\""),
+                Arguments.of("Trailing String Escape", "\"abc\\"),
+                Arguments.of("Multiline String", "\"abc\ndef\""),
+                Arguments.of("Empty Character", "''"),
+                Arguments.of("Multiple Characters", "'abc'"),
+                Arguments.of("Single Escape", "'\\'"),
+                Arguments.of("Escape Then Character", "'\\nx'"),
+                Arguments.of("Just Opening Single Quote", "'")
+        );
+    }
+
     /**
      * Tests that lexing the input through {@link Lexer#lexToken()} produces a
      * single token with the expected type and literal matching the input.
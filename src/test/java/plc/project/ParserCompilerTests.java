@@ -1,17 +1,22 @@
 package plc.project;
 
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.io.StringReader;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
@@ -20,6 +25,13 @@ import java.util.stream.Stream;
  */
 final class ParserCompilerTests {
 
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterAll
+    static void shutdown() {
+        POOL.shutdown();
+    }
+
     @ParameterizedTest
     @MethodSource
     void testSource(String test, List<Token> tokens, Ast.Source expected) {
@@ -575,6 +587,73 @@ final class ParserCompilerTests {
         test(input, expected, ParserCompiler::parseSource);
     }
 
+    @Test
+    void testStreamingSource() {
+        String input = "LET first: Integer = 1\n"
+                + "DEF main(): Integer DO\n"
+                + "    WHILE first != 10 DO\n"
+                + "        print(first)\n"
+                + "        first = first + 1\n"
+                + "    END\n"
+                + "END\n";
+        DfaLexer lexer = new DfaLexer(new StringReader(input));
+        Assertions.assertEquals(new ParserCompiler(new Lexer(input).lex()).parseSource(),
+                new ParserCompiler(lexer::lexToken).parseSource());
+    }
+
+    @Test
+    void testStreamingException() {
+        String input = "DEF main() DO\n    RETURN\n";
+        ParseException expected = Assertions.assertThrows(ParseException.class,
+                () -> new ParserCompiler(new Lexer(input).lex()).parseSource());
+        DfaLexer lexer = new DfaLexer(new StringReader(input));
+        ParseException exception = Assertions.assertThrows(ParseException.class,
+                () -> new ParserCompiler(lexer::lexToken).parseSource());
+        Assertions.assertEquals(expected.getIndex(), exception.getIndex());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testParallelSource(String test, String input) {
+        try {
+            Ast.Source expected = new ParserCompiler(new Lexer(input).lex()).parseSource();
+            Assertions.assertEquals(expected, new ParserCompiler(new Lexer(input).lex()).parseSource(POOL));
+        } catch (ParseException e) {
+            ParseException exception = Assertions.assertThrows(ParseException.class,
+                    () -> new ParserCompiler(new Lexer(input).lex()).parseSource(POOL));
+            Assertions.assertEquals(e.getMessage(), exception.getMessage());
+            Assertions.assertEquals(e.getIndex(), exception.getIndex());
+        }
+    }
+
+    private static Stream<Arguments> testParallelSource() {
+        String method = "DEF f(x: Integer): Integer DO\n"
+                + "    IF x < 2 DO RETURN x ELSE WHILE TRUE DO x = x - 1 END END\n"
+                + "    RETURN f(x - 1) + f(x - 2)\n"
+                + "END\n";
+        String struct = "DEF TYPE Point:\n    LET x: Integer\n    DEF get() DO RETURN x END\nEND\n";
+        // many units, so the pool gets far more tasks than threads
+        String fields = IntStream.range(0, 500).mapToObj(i -> "LET a" + i + ": Integer = " + i + "\n").collect(Collectors.joining());
+        String methods = IntStream.range(0, 500).mapToObj(i -> method.replace("f(", "f" + i + "(") + (i % 50 == 0 ? struct : ""))
+                .collect(Collectors.joining());
+        // keywords used as names, which throw off the scan for the units
+        String doName = "DEF g(): Integer DO\n    LET DO: Integer = 1\n    RETURN DO\nEND\n";
+        String endName = "DEF g(): Integer DO\n    LET END: Integer = 1\n    RETURN END\nEND\n";
+        return Stream.of(
+                Arguments.of("Units", "LET a: Integer = 1\nLET b: Boolean\n" + method + method + struct + method),
+                Arguments.of("Keyword Names", "LET a: Integer = DEF\n" + method),
+                Arguments.of("Field After Method", method + "LET a: Integer\n"),
+                Arguments.of("Missing End", method + "DEF main() DO\n    RETURN 1\n" + method),
+                Arguments.of("Stray Token", method + "1\n" + method),
+                Arguments.of("Many Units", fields + methods),
+                Arguments.of("Many Units, Keyword Value", fields + "LET a: Integer = DEF\n" + fields + methods),
+                Arguments.of("Many Units, DO Name", fields + methods + doName + methods),
+                Arguments.of("Many Units, END Name", fields + methods + endName + methods),
+                Arguments.of("Many Units, Missing End", fields + methods + "DEF main() DO\n    RETURN 1\n" + methods),
+                Arguments.of("Many Units, Extra End", fields + methods + "END\n" + methods)
+        );
+    }
+
     /**
      * Standard test function. If expected is null, a ParseException is expected
      * to be thrown (not used in the provided tests).